@@ -0,0 +1,134 @@
+package gg.tracer.commons.processor;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes the binary names of classes annotated with {@code @AutoRegister}
+ * to {@value #INDEX}, which {@code TracerPlugin#registerIndexed()} reads
+ * instead of scanning the plugin's jar.
+ * <p>
+ * The annotation and {@code Registrable} are referenced by name so this
+ * module has no dependency on the commons or the server api.
+ *
+ * @author Bradley Steele
+ */
+@SupportedAnnotationTypes(AutoRegisterProcessor.AUTO_REGISTER)
+public class AutoRegisterProcessor extends AbstractProcessor {
+
+    public static final String INDEX = "META-INF/tracer/registrables";
+
+    static final String AUTO_REGISTER = "gg.tracer.commons.register.AutoRegister";
+    static final String REGISTRABLE = "gg.tracer.commons.register.Registrable";
+
+    private final Set<String> indexed = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        if (round.processingOver()) {
+            write();
+            return false;
+        }
+
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(AUTO_REGISTER);
+        TypeElement registrable = processingEnv.getElementUtils().getTypeElement(REGISTRABLE);
+
+        if (annotation == null) {
+            return false;
+        }
+
+        for (Element element : round.getElementsAnnotatedWith(annotation)) {
+            if (validate(element, registrable)) {
+                indexed.add(processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString());
+            }
+        }
+
+        return true;
+    }
+
+    private boolean validate(Element element, TypeElement registrable) {
+        if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+            return error(element, "@AutoRegister can only be applied to concrete classes");
+        }
+
+        TypeElement type = (TypeElement) element;
+
+        if (registrable != null) {
+            TypeMirror registrableType = processingEnv.getTypeUtils().erasure(registrable.asType());
+
+            if (!processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type.asType()), registrableType)) {
+                return error(element, "@AutoRegister classes must implement Registrable");
+            }
+        }
+
+        if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)) {
+            return error(element, "@AutoRegister cannot be applied to inner classes, make it static");
+        }
+
+        if (!isConstructible(type)) {
+            return error(element, "@AutoRegister classes must have a no-args constructor or a static get/getInstance accessor");
+        }
+
+        return true;
+    }
+
+    // mirrors Reflection#newInstance and Reflection#getSingleton
+    private boolean isConstructible(TypeElement type) {
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            String name = method.getSimpleName().toString();
+
+            if ((name.equals("get") || name.equals("getInstance"))
+                    && method.getModifiers().contains(Modifier.STATIC)
+                    && method.getParameters().isEmpty()) {
+                return true;
+            }
+        }
+
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void write() {
+        if (indexed.isEmpty()) {
+            return;
+        }
+
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+
+            try (Writer writer = file.openWriter()) {
+                for (String name : indexed) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + INDEX + ": " + e.getMessage());
+        }
+    }
+
+    private boolean error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+        return false;
+    }
+}
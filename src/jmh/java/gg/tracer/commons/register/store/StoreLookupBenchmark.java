@@ -0,0 +1,77 @@
+package gg.tracer.commons.register.store;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares case-insensitive {@link Store} lookups against lower casing
+ * the key on every call. Run with {@code gradle jmh}, add
+ * {@code -prof gc} to the jmh args to compare allocation rates.
+ *
+ * @author Bradley Steele
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreLookupBenchmark {
+
+    private static final String[] NAMES = {
+            "spawn", "warp", "home", "kit", "tpa", "msg", "reply", "balance",
+            "pay", "fly", "gamemode", "heal", "feed", "vanish", "kick", "ban"
+    };
+
+    @Param({"lower", "mixed"})
+    public String keys;
+
+    @Param({"false", "true"})
+    public boolean concurrent;
+
+    private final Store<String> store = new Store<>();
+    private final Map<Object, String> baseline = new HashMap<>();
+    private String[] lookups;
+
+    @Setup
+    public void setup() {
+        store.setConcurrent(concurrent);
+
+        for (String name : NAMES) {
+            store.store(name, name);
+            baseline.put(name, name);
+        }
+
+        lookups = new String[NAMES.length];
+
+        for (int i = 0; i < NAMES.length; i++) {
+            String name = NAMES[i];
+            lookups[i] = keys.equals("mixed") ? Character.toUpperCase(name.charAt(0)) + name.substring(1) : name;
+        }
+    }
+
+    @Benchmark
+    public void toLowerCase(Blackhole blackhole) {
+        for (String key : lookups) {
+            blackhole.consume(baseline.get(key.toLowerCase()));
+        }
+    }
+
+    @Benchmark
+    public void retrieve(Blackhole blackhole) {
+        for (String key : lookups) {
+            blackhole.consume(store.retrieve(key));
+        }
+    }
+
+    @Benchmark
+    public void exists(Blackhole blackhole) {
+        for (String key : lookups) {
+            blackhole.consume(store.exists(key));
+        }
+    }
+}
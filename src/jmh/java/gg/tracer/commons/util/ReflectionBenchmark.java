@@ -0,0 +1,126 @@
+package gg.tracer.commons.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cached {@link Reflection} lookups and accessors against
+ * resolving the member on every call, as {@link Reflection} used to,
+ * and a generated invoker against a direct call.
+ * Run with {@code gradle jmh}.
+ *
+ * @author Bradley Steele
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReflectionBenchmark {
+
+    private static final FieldAccessor<Object> PLUGIN = Reflection.getFieldAccessor(Child.class, "plugin");
+    private static final MethodAccessor<Integer> ADD = Reflection.getMethodAccessor(Child.class, "add", int.class);
+    private static final Adder ADDER = Reflection.createInvoker(Adder.class, Child.class, "add", int.class);
+
+    private final Child target = new Child();
+    private final Object value = new Object();
+
+    @Benchmark
+    public Object setFieldUncached() throws ReflectiveOperationException {
+        Field field = findField(Child.class, "plugin");
+        field.setAccessible(true);
+        field.set(target, value);
+        return target;
+    }
+
+    @Benchmark
+    public Object setFieldCached() {
+        Reflection.setFieldValue(target, "plugin", value);
+        return target;
+    }
+
+    @Benchmark
+    public Object setFieldAccessor() {
+        PLUGIN.set(target, value);
+        return target;
+    }
+
+    @Benchmark
+    public Object invokeUncached() throws ReflectiveOperationException {
+        Method method = findMethod(Child.class, "add", int.class);
+        method.setAccessible(true);
+        return method.invoke(target, 1);
+    }
+
+    @Benchmark
+    public Object invokeCached() throws ReflectiveOperationException {
+        return Reflection.getMethod(Child.class, "add", int.class).invoke(target, 1);
+    }
+
+    @Benchmark
+    public Object invokeAccessor() {
+        return ADD.invoke(target, 1);
+    }
+
+    @Benchmark
+    public int invokeLambda() {
+        return ADDER.add(target, 1);
+    }
+
+    @Benchmark
+    public int invokeDirect() {
+        return target.addDirect(1);
+    }
+
+    // the previous uncached lookups
+
+    private static Field findField(Class<?> clazz, String name) {
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredField(name);
+            } catch (NoSuchFieldException e) {
+                // ignore
+            }
+        }
+
+        return null;
+    }
+
+    private static Method findMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredMethod(name, parameterTypes);
+            } catch (NoSuchMethodException e) {
+                // ignore
+            }
+        }
+
+        return null;
+    }
+
+    public static class Parent {
+
+        private Object plugin;
+        private int count;
+
+        private int add(int amount) {
+            return count += amount;
+        }
+    }
+
+    public static class Child extends Parent {
+
+        public int addDirect(int amount) {
+            return super.add(amount);
+        }
+    }
+
+    public interface Adder {
+
+        int add(Object target, int amount);
+    }
+}
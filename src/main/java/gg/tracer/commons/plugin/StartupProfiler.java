@@ -0,0 +1,188 @@
+package gg.tracer.commons.plugin;
+
+import gg.tracer.commons.gson.StaticGson;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the phases of a {@link TracerPlugin}'s startup: load, enable,
+ * each registration and each resource load. Once the plugin is enabled
+ * the slowest entries are logged and the full profile is written to
+ * {@value #FILE_NAME} in the data folder, after which nothing more is
+ * recorded.
+ *
+ * @author Bradley Steele
+ */
+public class StartupProfiler {
+
+    public static final String FILE_NAME = "startup-profile.json";
+    public static final int DEFAULT_TOP = 10;
+
+    public static final String PHASE = "phase";
+    public static final String INTERNAL_REGISTER = "internal_register";
+    public static final String REGISTER = "register";
+    public static final String RESOURCE = "resource";
+
+    private final long origin = System.nanoTime();
+    private final List<Entry> entries = new ArrayList<>();
+
+    private volatile boolean enabled = true;
+    private int top = DEFAULT_TOP;
+
+    /**
+     * @return the start time to pass to {@link #record(String, String, long)}.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records an entry, this is thread-safe.
+     *
+     * @param category   the kind of entry, e.g. {@link #REGISTER}
+     * @param name       the name of the entry
+     * @param startNanos the value returned by {@link #start()}
+     */
+    public void record(String category, String name, long startNanos) {
+        if (!enabled || startNanos == 0) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        Entry entry = new Entry(category, name, Thread.currentThread().getName(), toMillis(startNanos - origin), toMillis(now - startNanos));
+
+        synchronized (entries) {
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * Logs the slowest entries and writes the profile, then stops recording.
+     */
+    void report(TracerPlugin plugin) {
+        if (!enabled) {
+            return;
+        }
+
+        enabled = false;
+
+        List<Entry> entries;
+
+        synchronized (this.entries) {
+            entries = new ArrayList<>(this.entries);
+        }
+
+        double load = 0;
+        double enable = 0;
+
+        for (Entry entry : entries) {
+            if (entry.category.equals(PHASE)) {
+                if (entry.name.equals("load")) {
+                    load = entry.durationMs;
+                } else if (entry.name.equals("enable")) {
+                    enable = entry.durationMs;
+                }
+            }
+        }
+
+        plugin.logger.info("Startup took &a%s&rms (load: &2%s&rms, enable: &2%s&rms), slowest:", format(load + enable), format(load), format(enable));
+
+        entries.stream()
+                .filter(entry -> !entry.category.equals(PHASE))
+                .sorted(Comparator.comparingDouble((Entry entry) -> entry.durationMs).reversed())
+                .limit(top)
+                .forEach(entry -> plugin.logger.info("  &a%s&rms &7%s&r %s", format(entry.durationMs), entry.category, entry.name));
+
+        Report report = new Report();
+        report.plugin = plugin.getName();
+        report.version = plugin.getDescription().getVersion();
+        report.timestamp = System.currentTimeMillis();
+        report.loadMs = load;
+        report.enableMs = enable;
+        report.entries = entries;
+
+        File file = new File(plugin.getDataFolder(), FILE_NAME);
+
+        try {
+            File parent = file.getParentFile();
+
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("unable to create directory " + parent.getPath());
+            }
+
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                StaticGson.getGsonPretty().toJson(report, writer);
+            }
+        } catch (IOException e) {
+            plugin.logger.error("An IOException was caught while writing the startup profile [&c%s&r]:", file.getPath());
+            plugin.logger.exception(e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param enabled whether startup is profiled, this should be set in {@link TracerPlugin#load()}
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    /**
+     * @param top the number of slowest entries to log
+     */
+    public void setTop(int top) {
+        if (top < 0) {
+            throw new IllegalArgumentException("top cannot be negative");
+        }
+
+        this.top = top;
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / (double) TimeUnit.MILLISECONDS.toNanos(1) * 1000) / 1000.0;
+    }
+
+    private static String format(double millis) {
+        return String.format(Locale.ROOT, "%.2f", millis);
+    }
+
+    private static final class Entry {
+
+        private final String category;
+        private final String name;
+        private final String thread;
+        private final double startMs;
+        private final double durationMs;
+
+        private Entry(String category, String name, String thread, double startMs, double durationMs) {
+            this.category = category;
+            this.name = name;
+            this.thread = thread;
+            this.startMs = startMs;
+            this.durationMs = durationMs;
+        }
+    }
+
+    private static final class Report {
+
+        private String plugin;
+        private String version;
+        private long timestamp;
+        private double loadMs;
+        private double enableMs;
+        private List<Entry> entries;
+    }
+}
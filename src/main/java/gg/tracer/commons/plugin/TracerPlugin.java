@@ -1,26 +1,58 @@
 package gg.tracer.commons.plugin;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import gg.tracer.commons.logging.TracerLog;
+import gg.tracer.commons.register.AutoRegister;
 import gg.tracer.commons.register.Registrable;
+import gg.tracer.commons.register.worker.WorkerScheduler;
 import gg.tracer.commons.resource.ResourceProvider;
 import gg.tracer.commons.resource.json.JsonResourceHandler;
 import gg.tracer.commons.resource.yml.YamlResourceHandler;
 import gg.tracer.commons.util.Reflection;
+import org.bukkit.Bukkit;
 import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitTask;
 import org.bukkit.plugin.java.JavaPlugin;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * @author Bradley Steele
  */
 public abstract class TracerPlugin extends JavaPlugin {
 
-    private final List<Registrable> registrables = new ArrayList<>();
+    public static final String REGISTRABLE_INDEX = "META-INF/tracer/registrables";
+    public static final int DEFAULT_COMMAND_THREADS = 4;
+    public static final int DEFAULT_COMMAND_QUEUE = 256;
+    public static final long DEFAULT_COMMAND_SHUTDOWN_TIMEOUT = 5000;
+
+    private final CopyOnWriteArrayList<Registrable> registrables = new CopyOnWriteArrayList<>();
+    // set on parallel register() threads, registrations made there run after the batch
+    private final ThreadLocal<Queue<Object>> deferred = new ThreadLocal<>();
 
     public final TracerLog logger = new TracerLog(this);
+    private final StartupProfiler startupProfiler = new StartupProfiler();
     protected ResourceProvider resourceProvider;
+    private WorkerScheduler workerScheduler;
+    private ExecutorService commandExecutor;
+    private final Executor mainThreadExecutor = task -> {
+        if (Bukkit.isPrimaryThread()) {
+            task.run();
+        } else {
+            getServer().getScheduler().runTask(this, task);
+        }
+    };
+    private int registerParallelism = 1;
+    // incremental reloads in progress, failed if the plugin is disabled
+    private final Set<CompletableFuture<?>> reloads = ConcurrentHashMap.newKeySet();
+    // set once disabled so late callbacks cannot recreate the executors
+    private boolean disabled;
 
     @Override
     public final void onLoad() {
@@ -28,16 +60,31 @@ public abstract class TracerPlugin extends JavaPlugin {
         resourceProvider.addResourceHandler(new YamlResourceHandler());
         resourceProvider.addResourceHandler(new JsonResourceHandler());
 
+        long start = startupProfiler.start();
         execute(StateType.LOAD, this::load);
+        startupProfiler.record(StartupProfiler.PHASE, "load", start);
     }
 
     @Override
     public final void onEnable() {
+        synchronized (this) {
+            disabled = false;
+        }
+
+        long start = startupProfiler.start();
         execute(StateType.ENABLE, this::enable);
+        startupProfiler.record(StartupProfiler.PHASE, "enable", start);
+
+        startupProfiler.report(this);
     }
 
     @Override
     public final void onDisable() {
+        // bukkit cancels their tasks
+        for (CompletableFuture<?> reload : reloads) {
+            reload.completeExceptionally(new CancellationException("plugin " + getName() + " was disabled"));
+        }
+
         for (Registrable registrable : registrables) {
             unregister(registrable);
         }
@@ -45,6 +92,20 @@ public abstract class TracerPlugin extends JavaPlugin {
         registrables.clear();
 
         execute(StateType.DISABLE, this::disable);
+
+        synchronized (this) {
+            disabled = true;
+
+            if (workerScheduler != null) {
+                workerScheduler.shutdown();
+                workerScheduler = null;
+            }
+
+            if (commandExecutor != null) {
+                shutdown(commandExecutor);
+                commandExecutor = null;
+            }
+        }
     }
 
     // semi-abstract
@@ -60,6 +121,17 @@ public abstract class TracerPlugin extends JavaPlugin {
         return logger;
     }
 
+    /**
+     * @return an unmodifiable view of the registered registrables.
+     */
+    public List<Registrable> getRegistrables() {
+        return Collections.unmodifiableList(registrables);
+    }
+
+    public StartupProfiler getStartupProfiler() {
+        return startupProfiler;
+    }
+
     public ResourceProvider getResourceProvider() {
         return resourceProvider;
     }
@@ -68,7 +140,347 @@ public abstract class TracerPlugin extends JavaPlugin {
         return getServer().getPluginManager();
     }
 
+    /**
+     * Returns the scheduler that runs this plugin's
+     * scheduled task workers, creating it if required.
+     *
+     * @return the worker scheduler
+     * @throws IllegalStateException if the plugin has been disabled
+     */
+    public synchronized WorkerScheduler getWorkerScheduler() {
+        if (disabled) {
+            throw new IllegalStateException("plugin " + getName() + " is disabled");
+        }
+
+        if (workerScheduler == null || workerScheduler.isShutdown()) {
+            workerScheduler = new WorkerScheduler(this);
+        }
+
+        return workerScheduler;
+    }
+
+    /**
+     * Replaces the worker scheduler, this should be called
+     * in {@link #load()} before any workers are registered.
+     *
+     * @param workerScheduler the scheduler to use
+     */
+    public synchronized void setWorkerScheduler(WorkerScheduler workerScheduler) {
+        if (this.workerScheduler != null && this.workerScheduler != workerScheduler) {
+            this.workerScheduler.shutdown();
+        }
+
+        this.workerScheduler = workerScheduler;
+    }
+
+    /**
+     * Returns the bounded executor which runs this plugin's asynchronous
+     * commands, creating it if required. It has {@value #DEFAULT_COMMAND_THREADS}
+     * threads and queues up to {@value #DEFAULT_COMMAND_QUEUE} executions,
+     * rejecting any more.
+     *
+     * @return the command executor
+     * @throws IllegalStateException if the plugin has been disabled
+     */
+    public synchronized ExecutorService getCommandExecutor() {
+        if (disabled) {
+            throw new IllegalStateException("plugin " + getName() + " is disabled");
+        }
+
+        if (commandExecutor == null || commandExecutor.isShutdown()) {
+            commandExecutor = new ThreadPoolExecutor(DEFAULT_COMMAND_THREADS, DEFAULT_COMMAND_THREADS,
+                    60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(DEFAULT_COMMAND_QUEUE),
+                    new ThreadFactoryBuilder()
+                            .setNameFormat(getName().replace("%", "%%") + "-command-%d")
+                            .setDaemon(true)
+                            .build());
+
+            ((ThreadPoolExecutor) commandExecutor).allowCoreThreadTimeOut(true);
+        }
+
+        return commandExecutor;
+    }
+
+    /**
+     * Replaces the command executor, this should be called in
+     * {@link #load()} before any commands are registered. The
+     * executor is shut down when the plugin is disabled.
+     *
+     * @param commandExecutor the executor to use
+     */
+    public synchronized void setCommandExecutor(ExecutorService commandExecutor) {
+        if (this.commandExecutor != null && this.commandExecutor != commandExecutor) {
+            shutdown(this.commandExecutor);
+        }
+
+        this.commandExecutor = commandExecutor;
+    }
+
+    /**
+     * @return an executor which runs tasks on the main thread, immediately if already on it
+     */
+    public Executor getMainThreadExecutor() {
+        return mainThreadExecutor;
+    }
+
+    private void shutdown(ExecutorService executor) {
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(DEFAULT_COMMAND_SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                logger.warn("Command executor did not terminate within &e%s&rms: interrupting remaining commands", DEFAULT_COMMAND_SHUTDOWN_TIMEOUT);
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public boolean register(Registrable registrable) {
+        if (defer(registrable)) {
+            return true;
+        }
+
+        return internalRegister(registrable) && callRegister(registrable);
+    }
+
+    public boolean register(Class<? extends Registrable> clazz) {
+        if (defer(clazz)) {
+            return true;
+        }
+
+        Registrable registrable = resolve(clazz);
+        return registrable != null && register(registrable);
+    }
+
+    public boolean register(Object object) {
+        if (defer(object)) {
+            return true;
+        }
+
+        Registrable registrable = resolve(object);
+        return registrable != null && register(registrable);
+    }
+
+    /**
+     * Registers the objects in the given order, each is resolved and
+     * registered before the next.
+     * <p>
+     * If the register parallelism is greater than 1, every object is
+     * resolved first and they are registered in order of their
+     * {@link Registrable#getDependencies()}. Every internal registration
+     * runs on the calling thread, then independent {@link Registrable#register()}
+     * calls run in parallel, each starting once its dependencies have
+     * finished. This returns once all of them have finished. Objects
+     * registered by a parallel {@code register()} are queued and
+     * registered on the calling thread once the batch has finished.
+     *
+     * @param objects the registrables or registrable classes
+     */
+    public void register(Iterable<Object> objects) {
+        if (registerParallelism <= 1 || deferred.get() != null) {
+            for (Object object : objects) {
+                register(object);
+            }
+
+            return;
+        }
+
+        List<Registrable> batch = new ArrayList<>();
+
+        for (Object object : objects) {
+            Registrable registrable = resolve(object);
+
+            if (registrable != null) {
+                batch.add(registrable);
+            }
+        }
+
+        registerAll(batch);
+    }
+
+    public void register(Object... objects) {
+        register(Arrays.asList(objects));
+    }
+
+    /**
+     * Registers every {@link AutoRegister} class listed in this plugin's
+     * {@value #REGISTRABLE_INDEX}, which is generated at compile time by
+     * the {@code processor} module. Only the listed classes are loaded.
+     *
+     * @return the number of classes found in the index
+     */
+    public int registerIndexed() {
+        List<Object> classes = new ArrayList<>();
+
+        try (InputStream stream = getResource(REGISTRABLE_INDEX)) {
+            if (stream == null) {
+                logger.warn("No registrable index &e%s&r was found, is the annotation processor configured?", REGISTRABLE_INDEX);
+                return 0;
+            }
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                try {
+                    classes.add(Class.forName(line, false, getClassLoader()));
+                } catch (ClassNotFoundException | LinkageError e) {
+                    logger.error("Failed to load indexed registrable &c%s&r:", line);
+                    logger.exception(e);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("An IOException was caught while reading the registrable index:");
+            logger.exception(e);
+        }
+
+        register(classes);
+        return classes.size();
+    }
+
+    private void registerAll(List<Registrable> batch) {
+        Map<Registrable, List<Registrable>> dependencies = new IdentityHashMap<>();
+        List<Registrable> ordered = sortByDependencies(batch, dependencies);
+
+        if (ordered == null) {
+            ordered = batch;
+            dependencies.clear();
+        }
+
+        if (registerParallelism <= 1 || ordered.size() < 2) {
+            for (Registrable registrable : ordered) {
+                register(registrable);
+            }
+
+            return;
+        }
+
+        List<Registrable> registered = new ArrayList<>(ordered.size());
+
+        for (Registrable registrable : ordered) {
+            if (internalRegister(registrable)) {
+                registered.add(registrable);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(registerParallelism, registered.size()), new ThreadFactoryBuilder()
+                .setNameFormat(getName().replace("%", "%%") + "-register-%d")
+                .setDaemon(true)
+                .build());
+
+        Queue<Object> nested = new ConcurrentLinkedQueue<>();
+
+        try {
+            Map<Registrable, CompletableFuture<Void>> futures = new IdentityHashMap<>();
+
+            for (Registrable registrable : registered) {
+                CompletableFuture<?>[] after = dependencies.getOrDefault(registrable, Collections.emptyList()).stream()
+                        .map(futures::get)
+                        .filter(Objects::nonNull)
+                        .toArray(CompletableFuture[]::new);
+
+                futures.put(registrable, CompletableFuture.allOf(after)
+                        .thenRunAsync(() -> {
+                            deferred.set(nested);
+
+                            try {
+                                callRegister(registrable);
+                            } finally {
+                                deferred.remove();
+                            }
+                        }, executor));
+            }
+
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).join();
+        } finally {
+            executor.shutdown();
+        }
+
+        // listeners and commands are only registered on the calling thread
+        Object object;
+
+        while ((object = nested.poll()) != null) {
+            register(object);
+        }
+    }
+
+    private boolean defer(Object object) {
+        Queue<Object> queue = deferred.get();
+
+        // null is reported by the normal path
+        if (queue == null || object == null) {
+            return false;
+        }
+
+        queue.add(object);
+        return true;
+    }
+
+    // topological sort keeping the given order where possible, null if there is a cycle
+    private List<Registrable> sortByDependencies(List<Registrable> batch, Map<Registrable, List<Registrable>> dependencies) {
+        boolean any = false;
+
+        for (Registrable registrable : batch) {
+            List<Registrable> depends = new ArrayList<>();
+
+            for (Class<?> dependency : registrable.getDependencies()) {
+                boolean found = false;
+
+                for (Registrable other : batch) {
+                    if (other != registrable && dependency.isInstance(other)) {
+                        depends.add(other);
+                        found = true;
+                    }
+                }
+
+                if (!found && registrables.stream().noneMatch(dependency::isInstance)) {
+                    logger.warn("Registrable &e%s&r depends on &e%s&r which is not registered", registrable.getClass().getSimpleName(), dependency.getSimpleName());
+                }
+            }
+
+            any |= !depends.isEmpty();
+            dependencies.put(registrable, depends);
+        }
+
+        if (!any) {
+            return batch;
+        }
+
+        List<Registrable> ordered = new ArrayList<>(batch.size());
+        Set<Registrable> done = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        while (ordered.size() < batch.size()) {
+            Registrable next = null;
+
+            for (Registrable registrable : batch) {
+                if (!done.contains(registrable) && done.containsAll(dependencies.get(registrable))) {
+                    next = registrable;
+                    break;
+                }
+            }
+
+            if (next == null) {
+                logger.error("Registrable dependencies contain a cycle, registering in the given order");
+                return null;
+            }
+
+            ordered.add(next);
+            done.add(next);
+        }
+
+        return ordered;
+    }
+
+    private boolean internalRegister(Registrable registrable) {
         if (registrable == null) {
             logger.error("Attempted to register registrable object: &cnull&r");
             return false;
@@ -76,111 +488,259 @@ public abstract class TracerPlugin extends JavaPlugin {
 
         Reflection.setFieldValue(registrable, "plugin", this);
 
+        long start = startupProfiler.start();
+
         try {
-            registrable.internalRegister();
+            tracked(registrable, registrable::internalRegister);
         } catch (Throwable t) {
             logger.error("Failed to register (internal) registrable object &c%s&r:", registrable.getClass().getSimpleName());
             logger.exception(t);
             return false;
+        } finally {
+            startupProfiler.record(StartupProfiler.INTERNAL_REGISTER, registrable.getClass().getName(), start);
         }
 
         // no internal exceptions, successfully registered
-        if (!registrables.contains(registrable)) {
-            registrables.add(registrable);
-        }
+        registrables.addIfAbsent(registrable);
+
+        return true;
+    }
+
+    private boolean callRegister(Registrable registrable) {
+        long start = startupProfiler.start();
 
         try {
-            registrable.register();
+            tracked(registrable, registrable::register);
         } catch (Throwable t) {
             logger.exception(t);
             return false;
+        } finally {
+            startupProfiler.record(StartupProfiler.REGISTER, registrable.getClass().getName(), start);
         }
 
         return true;
     }
 
-    public boolean register(Class<? extends Registrable> clazz) {
+    private void tracked(Registrable registrable, Runnable action) {
+        if (resourceProvider != null) {
+            resourceProvider.track(registrable, action);
+        } else {
+            action.run();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Registrable resolve(Object object) {
+        if (object == null) {
+            logger.error("Failed to register registrable: null");
+            return null;
+        }
+
+        if (object instanceof Registrable registrable) {
+            return registrable;
+        }
+
+        if (!(object instanceof Class<?> clazz)) {
+            logger.error("Failed to register registrable &c%s&r: unknown object", object.getClass().getSimpleName());
+            return null;
+        }
+
+        if (!Registrable.class.isAssignableFrom(clazz)) {
+            logger.error("Failed to register registrable &c%s&r: class does not implement Registrable", clazz.getSimpleName());
+            return null;
+        }
+
         Registrable registrable;
 
         if (Reflection.isSingleton(clazz)) {
-            registrable = Reflection.getSingleton(clazz);
+            registrable = Reflection.getSingleton((Class<? extends Registrable>) clazz);
 
             if (registrable == null) {
                 logger.error("Failed to register registrable &c%s&r: singleton must have a \"get\" or \"getInstance\" accessor", clazz.getSimpleName());
-                return false;
             }
         } else {
-            registrable = Reflection.newInstance(clazz);
+            registrable = Reflection.newInstance((Class<? extends Registrable>) clazz);
 
             if (registrable == null) {
                 logger.error("Failed to register registrable &c%s&r: newInstance returned null", clazz.getSimpleName());
-                return false;
             }
         }
 
-        return register(registrable);
+        return registrable;
     }
 
-    @SuppressWarnings("unchecked")
-    public boolean register(Object object) {
-        if (object == null) {
-            logger.error("Failed to register registrable: null");
-            return false;
+    public void unregister(Registrable registrable) {
+        String name = registrable.getClass().getSimpleName();
+
+        try {
+            registrable.unregister();
+        } catch (Throwable t) {
+            logger.error("A throwable was caught while unregistering &c%s&r:", name);
+            logger.exception(t);
+        }
+
+        try {
+            registrable.internalUnregister();
+        } catch (Throwable t) {
+            logger.error("A throwable was caught while unregistering (internal) &c%s&r:", name);
+            logger.exception(t);
+        }
+    }
+
+    public void reload() {
+        for (Registrable registrable : registrables) {
+            unregister(registrable);
         }
 
-        if (object instanceof Registrable) {
-            return register((Registrable) object);
-        } else if (object instanceof Class<?> clazz) {
-            if (Registrable.class.isAssignableFrom(clazz)) {
-                return register((Class<? extends Registrable>) clazz);
-            } else {
-                logger.error("Failed to register registrable &c%s&r: class does not implement Registrable", clazz.getSimpleName());
+        registerAll(new ArrayList<>(registrables));
+    }
+
+    /**
+     * Reloads only the registered registrables of the given types,
+     * see {@link #reloadChanged()}.
+     *
+     * @param types the types of registrables to reload
+     * @return a future completed with the reloaded registrables
+     */
+    public CompletableFuture<List<Registrable>> reload(Class<?>... types) {
+        List<Registrable> targets = new ArrayList<>();
+
+        for (Registrable registrable : registrables) {
+            for (Class<?> type : types) {
+                if (type.isInstance(registrable)) {
+                    targets.add(registrable);
+                    break;
+                }
             }
-        } else {
-            logger.error("Failed to register registrable &c%s&r: unknown object", object.getClass().getSimpleName());
         }
 
-        return false;
+        return reloadIncrementally(targets);
     }
 
-    public void register(Iterable<Object> objects) {
-        for (Object object : objects) {
-            register(object);
+    /**
+     * Reloads only the registrables whose resources have been modified
+     * since they were loaded. Resources are attributed to a registrable
+     * when they are loaded while it registers, registrables that load
+     * resources elsewhere must be reloaded by {@link #reload(Class[])}.
+     * <p>
+     * Registrables are reloaded in dependency order, one per tick. Each
+     * is unregistered and registered again with the state returned by
+     * {@link Registrable#saveState()} handed to {@link Registrable#restoreState(Object)}.
+     * A registrable which fails to reload is logged and skipped. The future
+     * is completed exceptionally if the plugin is disabled first.
+     *
+     * @return a future completed with the reloaded registrables
+     */
+    public CompletableFuture<List<Registrable>> reloadChanged() {
+        List<Registrable> targets = new ArrayList<>();
+
+        for (Registrable registrable : registrables) {
+            if (resourceProvider.hasChanged(registrable)) {
+                targets.add(registrable);
+            }
         }
+
+        return reloadIncrementally(targets);
     }
 
-    public void register(Object... objects) {
-        for (Object object : objects) {
-            register(object);
+    private CompletableFuture<List<Registrable>> reloadIncrementally(List<Registrable> targets) {
+        CompletableFuture<List<Registrable>> future = new CompletableFuture<>();
+        List<Registrable> ordered = sortByDependencies(targets, new IdentityHashMap<>());
+
+        if (ordered == null) {
+            ordered = targets;
+        }
+
+        if (ordered.isEmpty()) {
+            future.complete(ordered);
+            return future;
+        }
+
+        List<Registrable> reloaded = Collections.unmodifiableList(ordered);
+        Iterator<Registrable> iterator = reloaded.iterator();
+        BukkitTask[] task = new BukkitTask[1];
+
+        reloads.add(future);
+        future.whenComplete((result, e) -> reloads.remove(future));
+
+        try {
+            task[0] = getServer().getScheduler().runTaskTimer(this, () -> {
+                if (future.isDone()) {
+                    task[0].cancel();
+                    return;
+                }
+
+                if (iterator.hasNext()) {
+                    Registrable registrable = iterator.next();
+
+                    try {
+                        cycle(registrable);
+                    } catch (Throwable t) {
+                        logger.error("A throwable was caught while reloading &c%s&r:", registrable.getClass().getSimpleName());
+                        logger.exception(t);
+                    }
+                }
+
+                if (!iterator.hasNext()) {
+                    task[0].cancel();
+                    logger.info("Reloaded &a%s&r registrables", reloaded.size());
+                    future.complete(reloaded);
+                }
+            }, 0, 1);
+        } catch (RuntimeException e) {
+            // e.g. the plugin is not enabled
+            future.completeExceptionally(e);
         }
+
+        return future;
     }
 
-    public void unregister(Registrable registrable) {
-        String name = registrable.getClass().getSimpleName();
+    private void cycle(Registrable registrable) {
+        Object state = null;
 
         try {
-            registrable.unregister();
+            state = registrable.saveState();
         } catch (Throwable t) {
-            logger.error("A throwable was caught while unregistering &c%s&r:", name);
+            logger.error("A throwable was caught while saving the state of &c%s&r:", registrable.getClass().getSimpleName());
             logger.exception(t);
         }
 
+        unregister(registrable);
+        resourceProvider.forget(registrable);
+
+        if (!internalRegister(registrable)) {
+            return;
+        }
+
         try {
-            registrable.internalUnregister();
+            registrable.restoreState(state);
         } catch (Throwable t) {
-            logger.error("A throwable was caught while unregistering (internal) &c%s&r:", name);
+            logger.error("A throwable was caught while restoring the state of &c%s&r:", registrable.getClass().getSimpleName());
             logger.exception(t);
         }
+
+        callRegister(registrable);
     }
 
-    public void reload() {
-        for (Registrable registrable : registrables) {
-            unregister(registrable);
-        }
+    public int getRegisterParallelism() {
+        return registerParallelism;
+    }
 
-        for (Registrable registrable : registrables) {
-            register(registrable);
+    /**
+     * Sets the number of threads that {@link #register(Object...)} may
+     * call {@link Registrable#register()} on, 1 (the default) registers
+     * everything sequentially on the calling thread. When greater than 1
+     * {@code register()} implementations must be thread-safe, must not
+     * use main thread only api and must not wait on the main thread.
+     *
+     * @param registerParallelism the maximum number of parallel registrations
+     */
+    public void setRegisterParallelism(int registerParallelism) {
+        if (registerParallelism < 1) {
+            throw new IllegalArgumentException("registerParallelism must be at least 1");
         }
+
+        this.registerParallelism = registerParallelism;
     }
 
     // state
@@ -0,0 +1,19 @@
+package gg.tracer.commons.register;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a {@link Registrable} to be registered by
+ * {@link gg.tracer.commons.plugin.TracerPlugin#registerIndexed()}.
+ * <p>
+ * The annotated classes are indexed at compile time by the
+ * {@code processor} module, which must be on the annotation processor
+ * path, so no classpath scanning is needed at runtime.
+ *
+ * @author Bradley Steele
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface AutoRegister {
+}
@@ -1,5 +1,8 @@
 package gg.tracer.commons.register;
 
+import java.util.Collection;
+import java.util.Collections;
+
 /**
  * @author Bradley Steele
  */
@@ -17,4 +20,34 @@ public interface Registrable {
     default void register() {}
 
     default void unregister() {}
+
+    /**
+     * Returns the types of registrables that must finish registering
+     * before this one, when registered together in parallel, see
+     * {@link gg.tracer.commons.plugin.TracerPlugin#setRegisterParallelism(int)}.
+     *
+     * @return the dependencies
+     */
+    default Collection<Class<?>> getDependencies() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Called before this is unregistered by a partial reload, the
+     * returned state is passed to {@link #restoreState(Object)} once
+     * it has been registered again.
+     *
+     * @return the state to keep, or null
+     */
+    default Object saveState() {
+        return null;
+    }
+
+    /**
+     * Called by a partial reload after the internal registration and
+     * before {@link #register()}.
+     *
+     * @param state the state returned by {@link #saveState()}
+     */
+    default void restoreState(Object state) {}
 }
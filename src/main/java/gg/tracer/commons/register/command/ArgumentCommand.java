@@ -0,0 +1,83 @@
+package gg.tracer.commons.register.command;
+
+import gg.tracer.commons.register.command.argument.ArgumentException;
+import gg.tracer.commons.register.command.argument.ArgumentSchema;
+import gg.tracer.commons.register.command.argument.Arguments;
+import gg.tracer.commons.util.Players;
+import gg.tracer.commons.util.Reflection;
+import org.bukkit.command.CommandSender;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link TracerCommand} executed with the arguments parsed by its
+ * {@link ArgumentSchema}, see {@link #setArguments(ArgumentSchema)}. A
+ * command without a schema takes no arguments. If the arguments are
+ * missing or invalid the sender is sent the error and the usage, and is
+ * not charged the command's cooldown or rate limit.
+ *
+ * @author Bradley Steele
+ */
+public abstract class ArgumentCommand extends TracerCommand {
+
+    private static final ArgumentSchema NO_ARGUMENTS = ArgumentSchema.builder().build();
+
+    /**
+     * Executes the command with its parsed arguments.
+     */
+    public abstract void execute(CommandSender sender, Arguments args);
+
+    @Override
+    public void execute(CommandSender sender, String[] args) {
+        Arguments parsed = parse(sender, args);
+
+        if (parsed != null) {
+            execute(sender, parsed);
+        }
+    }
+
+    /**
+     * Parses the arguments and calls {@link #executeAsync(CommandSender, Arguments)}
+     * if it is overridden, otherwise calls {@link #execute(CommandSender, String[])}
+     * as a synchronous command would.
+     */
+    @Override
+    public CompletableFuture<?> executeAsync(CommandSender sender, String[] args) {
+        if (!overridesExecuteAsync()) {
+            execute(sender, args);
+            return null;
+        }
+
+        Arguments parsed = parse(sender, args);
+        return parsed != null ? executeAsync(sender, parsed) : null;
+    }
+
+    /**
+     * Executes an asynchronous command with its parsed arguments, see
+     * {@link TracerCommandExecutor#executeAsync(CommandSender, String[])}.
+     *
+     * @return the future result, or null if there is nothing more to do
+     */
+    public CompletableFuture<?> executeAsync(CommandSender sender, Arguments args) {
+        execute(sender, args);
+        return null;
+    }
+
+    private boolean overridesExecuteAsync() {
+        Method method = Reflection.getMethod(getClass(), "executeAsync", CommandSender.class, Arguments.class);
+        return method != null && method.getDeclaringClass() != ArgumentCommand.class;
+    }
+
+    private Arguments parse(CommandSender sender, String[] args) {
+        ArgumentSchema arguments = getArguments() != null ? getArguments() : NO_ARGUMENTS;
+
+        try {
+            return arguments.parse(sender, args);
+        } catch (ArgumentException e) {
+            refundLimit(sender);
+            Players.sendMessage(sender, e.getMessage(), "&cUsage: " + getUsage());
+            return null;
+        }
+    }
+}
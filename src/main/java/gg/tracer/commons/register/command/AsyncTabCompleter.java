@@ -0,0 +1,168 @@
+package gg.tracer.commons.register.command;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completes a command's arguments off the main thread.
+ * <p>
+ * Bukkit asks for completions synchronously, so a request returns the
+ * suggestions cached for the typed arguments, or failing that those of
+ * the longest cached prefix filtered by what has since been typed, and
+ * completes the exact arguments on the worker pool to be returned by
+ * the next request. Each sender has at most one request in flight, a
+ * newer keystroke cancels the older request's future and its result is
+ * dropped.
+ *
+ * @author Bradley Steele
+ */
+final class AsyncTabCompleter {
+
+    private final TracerCommandTabCompleter completer;
+    private final Cache<String, List<String>> cache;
+    private final Map<Object, Request> requests = new ConcurrentHashMap<>();
+
+    AsyncTabCompleter(TracerCommandTabCompleter completer, long expiry) {
+        this.completer = completer;
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(expiry, TimeUnit.MILLISECONDS)
+                .maximumSize(1000)
+                .build();
+    }
+
+    List<String> complete(CommandSender sender, String alias, String[] args, Executor executor) {
+        Object senderKey = sender instanceof Player player ? player.getUniqueId() : sender.getName();
+        String base = key(senderKey, args);
+        String last = args.length > 0 ? args[args.length - 1] : "";
+        String key = base + last;
+
+        List<String> cached = cache.getIfPresent(key);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        Request previous = requests.get(senderKey);
+
+        // the same keystroke is already being completed
+        if (previous != null && previous.key.equals(key)) {
+            return bestKnown(base, last);
+        }
+
+        Request request = new Request(key);
+        previous = requests.put(senderKey, request);
+
+        if (previous != null) {
+            previous.cancel();
+        }
+
+        try {
+            executor.execute(() -> run(sender, alias, args, senderKey, request));
+        } catch (RejectedExecutionException e) {
+            requests.remove(senderKey, request);
+        }
+
+        return bestKnown(base, last);
+    }
+
+    private void run(CommandSender sender, String alias, String[] args, Object senderKey, Request request) {
+        // superseded before it started
+        if (requests.get(senderKey) != request) {
+            return;
+        }
+
+        CompletableFuture<List<String>> completion;
+
+        try {
+            completion = completer.tabCompleteAsync(sender, alias, args);
+        } catch (RuntimeException e) {
+            requests.remove(senderKey, request);
+            throw e;
+        }
+
+        if (completion == null) {
+            requests.remove(senderKey, request);
+            return;
+        }
+
+        request.completion = completion;
+
+        // superseded while completing, the newer request may have missed the completion
+        if (requests.get(senderKey) != request) {
+            completion.cancel(false);
+            return;
+        }
+
+        completion.whenComplete((suggestions, e) -> {
+            // results of older keystrokes are dropped
+            if (requests.remove(senderKey, request) && e == null) {
+                cache.put(request.key, suggestions != null ? Collections.unmodifiableList(suggestions) : Collections.emptyList());
+            }
+        });
+    }
+
+    void invalidate() {
+        cache.invalidateAll();
+    }
+
+    private List<String> bestKnown(String base, String last) {
+        for (int length = last.length() - 1; length >= 0; length--) {
+            List<String> cached = cache.getIfPresent(base + last.substring(0, length));
+
+            if (cached != null) {
+                List<String> filtered = new ArrayList<>();
+
+                for (String suggestion : cached) {
+                    if (suggestion.regionMatches(true, 0, last, 0, last.length())) {
+                        filtered.add(suggestion);
+                    }
+                }
+
+                return filtered;
+            }
+        }
+
+        return Collections.emptyList();
+    }
+
+    // the sender and all but the last argument
+    private static String key(Object senderKey, String[] args) {
+        StringBuilder key = new StringBuilder().append(senderKey).append('\0');
+
+        for (int i = 0; i < args.length - 1; i++) {
+            key.append(args[i]).append(' ');
+        }
+
+        return key.toString();
+    }
+
+    private static final class Request {
+
+        private final String key;
+        private volatile CompletableFuture<List<String>> completion;
+
+        private Request(String key) {
+            this.key = key;
+        }
+
+        private void cancel() {
+            CompletableFuture<List<String>> completion = this.completion;
+
+            if (completion != null) {
+                completion.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package gg.tracer.commons.register.command;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Applies a command's per-sender cooldown and token bucket rate limit,
+ * and bounds its asynchronous executions. Only players are limited.
+ *
+ * @author Bradley Steele
+ */
+final class CommandLimiter {
+
+    private final long cooldown;
+    private final int permits;
+    private final long period;
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final TracerCommand.BusyPolicy policy;
+
+    // senders are forgotten once their cooldown and bucket have expired
+    private final Cache<Object, Limit> limits;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<Queued> queue = new ConcurrentLinkedQueue<>();
+
+    CommandLimiter(long cooldown, int permits, long period, int maxInFlight, int maxQueued, TracerCommand.BusyPolicy policy) {
+        this.cooldown = cooldown;
+        this.permits = permits;
+        this.period = period;
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+        this.policy = policy;
+        this.limits = CacheBuilder.newBuilder()
+                .expireAfterAccess(Math.max(1, Math.max(cooldown, period)), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * @return 0 if the sender may execute the command, otherwise the milliseconds until they may
+     */
+    long acquire(CommandSender sender) {
+        if (!(sender instanceof Player player) || (cooldown <= 0 && permits <= 0)) {
+            return 0;
+        }
+
+        Limit limit = limits.asMap().computeIfAbsent(player.getUniqueId(), uuid -> new Limit(permits));
+
+        synchronized (limit) {
+            long now = System.currentTimeMillis();
+            long wait = cooldown > 0 ? limit.executed + cooldown - now : 0;
+
+            if (permits > 0) {
+                // refill continuously at permits per period
+                limit.tokens = Math.min(permits, limit.tokens + (now - limit.refilled) * permits / (double) period);
+                limit.refilled = now;
+
+                if (limit.tokens < 1) {
+                    wait = Math.max(wait, (long) Math.ceil((1 - limit.tokens) * period / permits));
+                }
+            }
+
+            if (wait > 0) {
+                return wait;
+            }
+
+            limit.previous = limit.executed;
+            limit.executed = now;
+
+            if (permits > 0) {
+                limit.tokens--;
+            }
+
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the sender's last acquired permit, for an execution which did not go ahead.
+     */
+    void refund(CommandSender sender) {
+        if (!(sender instanceof Player player)) {
+            return;
+        }
+
+        Limit limit = limits.getIfPresent(player.getUniqueId());
+
+        if (limit == null) {
+            return;
+        }
+
+        synchronized (limit) {
+            limit.executed = limit.previous;
+
+            if (permits > 0) {
+                limit.tokens = Math.min(permits, limit.tokens + 1);
+            }
+        }
+    }
+
+    /**
+     * Runs a task on the executor if fewer than the maximum executions
+     * are in flight, otherwise queues or rejects it by the policy. An
+     * execution is in flight until the future the task returns completes.
+     * Only executions waiting for a slot count towards the maximum queued.
+     *
+     * @param rejected run if the policy or the executor rejects the task, including once it was queued
+     */
+    void submit(Supplier<CompletableFuture<?>> task, Runnable rejected, Executor executor) {
+        if (maxInFlight <= 0) {
+            try {
+                executor.execute(task::get);
+            } catch (RejectedExecutionException e) {
+                rejected.run();
+            }
+
+            return;
+        }
+
+        if (policy == TracerCommand.BusyPolicy.REJECT) {
+            if (tryStart()) {
+                start(new Queued(task, rejected), executor);
+            } else {
+                rejected.run();
+            }
+
+            return;
+        }
+
+        // executions already waiting go first
+        if (queue.isEmpty() && tryStart()) {
+            start(new Queued(task, rejected), executor);
+            return;
+        }
+
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.run();
+            return;
+        }
+
+        queue.add(new Queued(task, rejected));
+        drain(executor);
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    int getQueued() {
+        return queued.get();
+    }
+
+    private void drain(Executor executor) {
+        while (!queue.isEmpty() && tryStart()) {
+            Queued next = queue.poll();
+
+            if (next == null) {
+                // taken by another thread
+                inFlight.decrementAndGet();
+                continue;
+            }
+
+            queued.decrementAndGet();
+            start(next, executor);
+        }
+    }
+
+    // holds a slot, released if the executor rejects the task
+    private void start(Queued queued, Executor executor) {
+        try {
+            run(queued.task, executor);
+        } catch (RejectedExecutionException e) {
+            queued.rejected.run();
+        }
+    }
+
+    private void run(Supplier<CompletableFuture<?>> task, Executor executor) {
+        try {
+            executor.execute(() -> {
+                CompletableFuture<?> future = null;
+
+                try {
+                    future = task.get();
+                } finally {
+                    if (future == null) {
+                        finish(executor);
+                    } else {
+                        future.whenComplete((result, e) -> finish(executor));
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void finish(Executor executor) {
+        inFlight.decrementAndGet();
+        drain(executor);
+    }
+
+    private boolean tryStart() {
+        int current;
+
+        do {
+            current = inFlight.get();
+
+            if (current >= maxInFlight) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+
+        return true;
+    }
+
+    private static final class Queued {
+
+        private final Supplier<CompletableFuture<?>> task;
+        private final Runnable rejected;
+
+        private Queued(Supplier<CompletableFuture<?>> task, Runnable rejected) {
+            this.task = task;
+            this.rejected = rejected;
+        }
+    }
+
+    private static final class Limit {
+
+        private long executed;
+        private long previous;
+        private double tokens;
+        private long refilled = System.currentTimeMillis();
+
+        private Limit(int permits) {
+            this.tokens = permits;
+        }
+    }
+}
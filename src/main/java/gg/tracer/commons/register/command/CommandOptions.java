@@ -1,8 +1,6 @@
 package gg.tracer.commons.register.command;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -14,25 +12,31 @@ public class CommandOptions {
         Result result = new Result();
 
         String option = null;
-        List<String> options = null;
+        StringBuilder value = null;
 
         for (String arg : args) {
-            if (arg.charAt(0) == '-') {
+            if (!arg.isEmpty() && arg.charAt(0) == '-') {
                 if (arg.length() < 2) {
                     continue;
                 }
 
+                result.put(option, value);
+
                 option = arg;
-                options = new ArrayList<>();
+                value = new StringBuilder();
 
                 // possible for an option to have no value
                 result.args.put(arg, "");
-            } else if (options != null) {
-                options.add(arg);
-                result.args.put(option, String.join(" ", options));
+            } else if (value != null) {
+                if (value.length() > 0) {
+                    value.append(' ');
+                }
+
+                value.append(arg);
             }
         }
 
+        result.put(option, value);
         return result;
     }
 
@@ -47,5 +51,11 @@ public class CommandOptions {
         public String getOption(String arg) {
             return args.get(arg);
         }
+
+        private void put(String option, StringBuilder value) {
+            if (option != null && value.length() > 0) {
+                args.put(option, value.toString());
+            }
+        }
     }
 }
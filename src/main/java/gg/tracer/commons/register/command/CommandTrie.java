@@ -0,0 +1,131 @@
+package gg.tracer.commons.register.command;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A case-insensitive trie of a command's child aliases, built once so
+ * a child is found in time proportional to the length of the argument
+ * rather than the number of children and aliases.
+ * <p>
+ * Each node keeps its outgoing characters sorted alongside the nodes
+ * they lead to. When two children share an alias the first one wins,
+ * as it did with a linear search.
+ * <p>
+ * The children's names are also indexed for tab completion.
+ *
+ * @author Bradley Steele
+ */
+final class CommandTrie {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    private final Node root = new Node();
+    private final SuggestionIndex names = new SuggestionIndex();
+    private final Map<String, TracerCommand> named = new HashMap<>();
+
+    CommandTrie(List<TracerCommand> children) {
+        for (TracerCommand child : children) {
+            for (String alias : child.getAliases()) {
+                insert(alias, child);
+            }
+
+            String name = child.getName();
+
+            if (name != null && named.putIfAbsent(name, child) == null) {
+                names.add(name);
+            }
+        }
+    }
+
+    /**
+     * @param alias the alias in any case
+     * @return the child with the alias, or null if there is none
+     */
+    TracerCommand find(String alias) {
+        Node node = root;
+
+        for (int i = 0, length = alias.length(); i < length && node != null; i++) {
+            node = node.next(Character.toLowerCase(alias.charAt(i)));
+        }
+
+        return node != null ? node.command : null;
+    }
+
+    /**
+     * @param prefix the partially typed name in any case
+     * @return the children with names starting with the prefix, sorted by name
+     */
+    List<TracerCommand> complete(String prefix) {
+        List<String> matches = names.suggest(prefix);
+        List<TracerCommand> children = new ArrayList<>(matches.size());
+
+        for (String name : matches) {
+            children.add(named.get(name));
+        }
+
+        return children;
+    }
+
+    private void insert(String alias, TracerCommand command) {
+        Node node = root;
+
+        for (int i = 0, length = alias.length(); i < length; i++) {
+            node = node.getOrCreate(Character.toLowerCase(alias.charAt(i)));
+        }
+
+        if (node.command == null) {
+            node.command = command;
+        }
+    }
+
+    private static final class Node {
+
+        private char[] keys = NO_KEYS;
+        private Node[] nodes = NO_NODES;
+        private TracerCommand command;
+
+        private Node next(char c) {
+            char[] keys = this.keys;
+
+            // most nodes have a single child
+            if (keys.length == 1) {
+                return keys[0] == c ? nodes[0] : null;
+            }
+
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? nodes[index] : null;
+        }
+
+        private Node getOrCreate(char c) {
+            int index = Arrays.binarySearch(keys, c);
+
+            if (index >= 0) {
+                return nodes[index];
+            }
+
+            index = -index - 1;
+
+            char[] keys = new char[this.keys.length + 1];
+            Node[] nodes = new Node[keys.length];
+
+            System.arraycopy(this.keys, 0, keys, 0, index);
+            System.arraycopy(this.nodes, 0, nodes, 0, index);
+            System.arraycopy(this.keys, index, keys, index + 1, this.keys.length - index);
+            System.arraycopy(this.nodes, index, nodes, index + 1, this.nodes.length - index);
+
+            Node node = new Node();
+            keys[index] = c;
+            nodes[index] = node;
+
+            this.keys = keys;
+            this.nodes = nodes;
+
+            return node;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package gg.tracer.commons.register.command;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A sorted index of tab completion suggestions, e.g. warps or items, so
+ * a case-insensitive prefix query is a range of the index rather than a
+ * scan of every option. Suggestions can be added and removed at any
+ * time, including from other threads.
+ *
+ * @author Bradley Steele
+ */
+public final class SuggestionIndex {
+
+    // lowercase + '\0' + original, so suggestions differing in case are both kept
+    private final NavigableMap<String, String> suggestions = new ConcurrentSkipListMap<>();
+
+    public SuggestionIndex() {}
+
+    public SuggestionIndex(Collection<String> suggestions) {
+        addAll(suggestions);
+    }
+
+    public void add(String suggestion) {
+        suggestions.put(key(suggestion), suggestion);
+    }
+
+    public void addAll(Collection<String> suggestions) {
+        for (String suggestion : suggestions) {
+            add(suggestion);
+        }
+    }
+
+    public void remove(String suggestion) {
+        suggestions.remove(key(suggestion));
+    }
+
+    public void clear() {
+        suggestions.clear();
+    }
+
+    public boolean contains(String suggestion) {
+        return suggestions.containsKey(key(suggestion));
+    }
+
+    public int size() {
+        return suggestions.size();
+    }
+
+    /**
+     * @param prefix the partially typed argument
+     * @return the suggestions starting with the prefix ignoring case, in order
+     */
+    public List<String> suggest(String prefix) {
+        return suggest(prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param prefix the partially typed argument
+     * @param limit  the maximum number of suggestions
+     * @return the first suggestions starting with the prefix ignoring case, in order
+     */
+    public List<String> suggest(String prefix, int limit) {
+        Collection<String> range = range(prefix).values();
+        List<String> matches = new ArrayList<>(Math.min(limit, 16));
+
+        for (String suggestion : range) {
+            if (matches.size() == limit) {
+                break;
+            }
+
+            matches.add(suggestion);
+        }
+
+        return matches;
+    }
+
+    private NavigableMap<String, String> range(String prefix) {
+        if (prefix.isEmpty()) {
+            return suggestions;
+        }
+
+        String from = prefix.toLowerCase(Locale.ROOT);
+        int end = from.length();
+
+        // the first key after every key starting with the prefix
+        while (end > 0 && from.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+
+        if (end == 0) {
+            return suggestions.tailMap(from, true);
+        }
+
+        String to = from.substring(0, end - 1) + (char) (from.charAt(end - 1) + 1);
+        return suggestions.subMap(from, true, to, false);
+    }
+
+    private static String key(String suggestion) {
+        return suggestion.toLowerCase(Locale.ROOT) + '\0' + suggestion;
+    }
+}
@@ -3,14 +3,17 @@ package gg.tracer.commons.register.command;
 import com.google.common.collect.Lists;
 import gg.tracer.commons.plugin.TracerPlugin;
 import gg.tracer.commons.register.Registrable;
+import gg.tracer.commons.register.command.argument.ArgumentSchema;
 import gg.tracer.commons.util.Players;
-import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.ConsoleCommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.util.StringUtil;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * @author Bradley Steele
@@ -18,6 +21,8 @@ import java.util.*;
 public abstract class TracerCommand implements Registrable, TracerCommandExecutor, TracerCommandTabCompleter {
 
     public static final List<String> EMPTY_TAB_COMPLETE = new ArrayList<>();
+    public static final long DEFAULT_TAB_COMPLETE_EXPIRY = 5000;
+    public static final int DEFAULT_MAX_QUEUED = 64;
 
     private TracerCommand parent;
     private TracerCommandExecutor executor = this;
@@ -35,11 +40,31 @@ public abstract class TracerCommand implements Registrable, TracerCommandExecuto
     private boolean allowConsole = false;
     private boolean sync = true;
     private boolean useDefaultTabCompleter = true;
+    private ArgumentSchema arguments;
+    private boolean asyncTabComplete = false;
+    private long tabCompleteExpiry = DEFAULT_TAB_COMPLETE_EXPIRY;
+    private long cooldown = 0;
+    private int ratePermits = 0;
+    private long ratePeriod = 0;
+    private int maxInFlight = 0;
+    private int maxQueued = DEFAULT_MAX_QUEUED;
+    private BusyPolicy busyPolicy = BusyPolicy.QUEUE;
+    private String cooldownMsg = "&cYou must wait &e{time}&c before using this command again.";
+    private String busyMsg = "&cThis command is busy, please try again shortly.";
+
+    // built lazily, cleared when the children or their aliases are set
+    private volatile CommandTrie dispatch;
+    private volatile AsyncTabCompleter asyncTab;
+    private volatile CommandLimiter limiter;
 
     protected TracerPlugin plugin;
 
     @Override
     public final void internalRegister() {
+        dispatch = null;
+        asyncTab = null;
+        limiter = null;
+
         for (TracerCommand child : children) {
             child.plugin = plugin;
             child.parent = this;
@@ -112,40 +137,65 @@ public abstract class TracerCommand implements Registrable, TracerCommandExecuto
 
     @Override
     public List<String> tabComplete(CommandSender sender, String alias, String[] args) {
+        if (arguments != null && (args.length > 1 || children.isEmpty())) {
+            return arguments.suggest(sender, args);
+        }
+
         if (useDefaultTabCompleter && args.length == 1) {
-            List<String> in = new ArrayList<>();
             List<String> out = new ArrayList<>();
 
-            for (TracerCommand child : children) {
-                if (child.hasPermission(sender)) {
-                    in.add(child.getName());
+            if (!children.isEmpty()) {
+                for (TracerCommand child : dispatch().complete(args[0])) {
+                    if (child.hasPermission(sender)) {
+                        out.add(child.getName());
+                    }
                 }
             }
 
-            StringUtil.copyPartialMatches(args[args.length - 1], in, out);
             return out;
         }
 
         return null;
     }
 
+    /**
+     * Calls {@link #tabComplete(CommandSender, String, String[])} on the
+     * main thread, as it may use the Bukkit api. Override this to complete
+     * off the main thread.
+     */
+    @Override
+    public CompletableFuture<List<String>> tabCompleteAsync(CommandSender sender, String alias, String[] args) {
+        return CompletableFuture.supplyAsync(() -> tabComplete(sender, alias, args), plugin.getMainThreadExecutor());
+    }
+
     public List<String> withMatches(String query, List<String> options) {
         return StringUtil.copyPartialMatches(query, options, new ArrayList<>());
     }
 
+    /**
+     * @param query the partially typed argument
+     * @param index the options, which should be kept rather than rebuilt per completion
+     * @return the options starting with the query ignoring case
+     */
+    public List<String> withMatches(String query, SuggestionIndex index) {
+        return index.suggest(query);
+    }
+
     protected final void internalExecute(CommandSender sender, String[] args) {
-        if (!children.isEmpty() && args.length > 0) {
-            for (TracerCommand child : children) {
-                if (child.aliases.stream().anyMatch(alias -> alias.equalsIgnoreCase(args[0]))) {
-                    List<String> childArgs = Lists.newArrayList(args);
-                    childArgs.remove(0);
-
-                    child.internalExecute(sender, childArgs.toArray(new String[0]));
-                    return;
-                }
-            }
+        internalExecute(sender, args, 0);
+    }
+
+    // args before offset are the aliases of this command's parents
+    private void internalExecute(CommandSender sender, String[] args, int offset) {
+        TracerCommand child = findChild(args, offset);
+
+        if (child != null) {
+            child.internalExecute(sender, args, offset + 1);
+            return;
         }
 
+        String[] commandArgs = slice(args, offset);
+
         if (!allowPlayer && sender instanceof Player) {
             sendPermissionDenyMessage(sender);
             return;
@@ -161,42 +211,156 @@ public abstract class TracerCommand implements Registrable, TracerCommandExecuto
             return;
         }
 
+        CommandLimiter limiter = limiter();
+        long wait = limiter.acquire(sender);
+
+        if (wait > 0) {
+            Players.sendMessage(sender, cooldownMsg.replace("{time}", String.format(Locale.ROOT, "%.1fs", wait / 1000.0)));
+            return;
+        }
+
         if (sync) {
-            internalExecute0(sender, args);
-        } else {
-            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> internalExecute0(sender, args));
+            internalExecute0(sender, commandArgs);
+            return;
+        }
+
+        limiter.submit(
+                () -> internalExecuteAsync(sender, commandArgs),
+                () -> {
+                    limiter.refund(sender);
+                    Players.sendMessage(sender, busyMsg);
+                },
+                plugin.getCommandExecutor()
+        );
+    }
+
+    /**
+     * Refunds the sender's cooldown and rate limit for an execution which
+     * did not go ahead, e.g. because its arguments were invalid.
+     */
+    protected final void refundLimit(CommandSender sender) {
+        CommandLimiter limiter = this.limiter;
+
+        if (limiter != null) {
+            limiter.refund(sender);
         }
     }
 
+    private CommandLimiter limiter() {
+        CommandLimiter limiter = this.limiter;
+
+        if (limiter == null) {
+            this.limiter = limiter = new CommandLimiter(cooldown, ratePermits, ratePeriod, maxInFlight, maxQueued, busyPolicy);
+        }
+
+        return limiter;
+    }
+
     private void internalExecute0(CommandSender sender, String[] args) {
         try {
             executor.execute(sender, args);
         } catch (Throwable e) {
-            List<String> cmd = Lists.newArrayList(args);
-            cmd.add(0, getName());
+            logException(args, e);
+        }
+    }
+
+    private CompletableFuture<?> internalExecuteAsync(CommandSender sender, String[] args) {
+        CompletableFuture<?> future;
+
+        try {
+            future = executor.executeAsync(sender, args);
+        } catch (Throwable e) {
+            logException(args, e);
+            return null;
+        }
 
-            plugin.logger.error("A Throwable was caught while executing command &c%s&r:", String.join(" ", cmd));
-            plugin.logger.exception(e);
+        if (future != null) {
+            future.whenCompleteAsync((result, e) -> {
+                if (e == null) {
+                    apply(sender, args, result);
+                } else if (!(e instanceof CancellationException)) {
+                    logException(args, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                }
+            }, plugin.getMainThreadExecutor());
+        }
+
+        return future;
+    }
+
+    // the result of an async command, on the main thread
+    @SuppressWarnings("unchecked")
+    private void apply(CommandSender sender, String[] args, Object result) {
+        try {
+            if (result instanceof Runnable runnable) {
+                runnable.run();
+            } else if (result instanceof String message) {
+                Players.sendMessage(sender, message);
+            } else if (result instanceof Iterable<?> messages) {
+                Players.sendMessage(sender, (Iterable<Object>) messages);
+            }
+        } catch (Throwable e) {
+            logException(args, e);
         }
     }
 
+    private void logException(String[] args, Throwable e) {
+        List<String> cmd = Lists.newArrayList(args);
+        cmd.add(0, getName());
+
+        plugin.logger.error("A Throwable was caught while executing command &c%s&r:", String.join(" ", cmd));
+        plugin.logger.exception(e);
+    }
+
     protected final List<String> internalTab(CommandSender sender, String alias, String[] args) {
+        return internalTab(sender, alias, args, 0);
+    }
+
+    private List<String> internalTab(CommandSender sender, String alias, String[] args, int offset) {
         if (!hasPermission(sender)) {
             return null;
         }
 
-        if (!children.isEmpty() && args.length > 0) {
-            for (TracerCommand child : children) {
-                if (child.aliases.stream().anyMatch(a -> a.equalsIgnoreCase(args[0]))) {
-                    List<String> childArgs = Lists.newArrayList(args);
-                    childArgs.remove(0);
+        TracerCommand child = findChild(args, offset);
 
-                    return child.internalTab(sender, alias, childArgs.toArray(new String[0]));
-                }
+        if (child != null) {
+            return child.internalTab(sender, alias, args, offset + 1);
+        }
+
+        String[] commandArgs = slice(args, offset);
+
+        if (asyncTabComplete) {
+            AsyncTabCompleter asyncTab = this.asyncTab;
+
+            if (asyncTab == null) {
+                this.asyncTab = asyncTab = new AsyncTabCompleter(this, tabCompleteExpiry);
             }
+
+            return asyncTab.complete(sender, alias, commandArgs, plugin.getWorkerScheduler().getExecutor());
         }
 
-        return tabComplete(sender, alias, args);
+        return tabComplete(sender, alias, commandArgs);
+    }
+
+    private TracerCommand findChild(String[] args, int offset) {
+        if (children.isEmpty() || offset >= args.length) {
+            return null;
+        }
+
+        return dispatch().find(args[offset]);
+    }
+
+    private CommandTrie dispatch() {
+        CommandTrie dispatch = this.dispatch;
+
+        if (dispatch == null) {
+            this.dispatch = dispatch = new CommandTrie(children);
+        }
+
+        return dispatch;
+    }
+
+    private static String[] slice(String[] args, int offset) {
+        return offset == 0 ? args : Arrays.copyOfRange(args, offset, args.length);
     }
 
     public void sendPermissionDenyMessage(CommandSender sender) {
@@ -228,7 +392,25 @@ public abstract class TracerCommand implements Registrable, TracerCommandExecuto
     }
 
     public String getUsage() {
-        return usage != null ? usage : "/" + getName();
+        if (usage != null) {
+            return usage;
+        }
+
+        if (arguments == null) {
+            return "/" + getName();
+        }
+
+        StringBuilder usage = new StringBuilder(getName());
+
+        for (TracerCommand parent = this.parent; parent != null; parent = parent.parent) {
+            usage.insert(0, ' ').insert(0, parent.getName());
+        }
+
+        if (!arguments.getUsage().isEmpty()) {
+            usage.append(' ').append(arguments.getUsage());
+        }
+
+        return usage.insert(0, '/').toString();
     }
 
     public String getPermission() {
@@ -267,6 +449,49 @@ public abstract class TracerCommand implements Registrable, TracerCommandExecuto
         return useDefaultTabCompleter;
     }
 
+    public boolean isAsyncTabComplete() {
+        return asyncTabComplete;
+    }
+
+    public long getTabCompleteExpiry() {
+        return tabCompleteExpiry;
+    }
+
+    public long getCooldown() {
+        return cooldown;
+    }
+
+    public int getRatePermits() {
+        return ratePermits;
+    }
+
+    public long getRatePeriod() {
+        return ratePeriod;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public BusyPolicy getBusyPolicy() {
+        return busyPolicy;
+    }
+
+    /**
+     * @return the number of asynchronous executions currently running
+     */
+    public int getInFlight() {
+        return limiter().getInFlight();
+    }
+
+    public ArgumentSchema getArguments() {
+        return arguments;
+    }
+
     public TracerCommand getRoot() {
         TracerCommand root = this;
 
@@ -317,6 +542,10 @@ public abstract class TracerCommand implements Registrable, TracerCommandExecuto
         for (String alias : aliases) {
             this.aliases.add(alias.toLowerCase());
         }
+
+        if (parent != null) {
+            parent.dispatch = null;
+        }
     }
 
     public void setAliases(String... aliases) {
@@ -329,9 +558,10 @@ public abstract class TracerCommand implements Registrable, TracerCommandExecuto
         }
 
         child.plugin = plugin;
-        child.parent = parent;
+        child.parent = this;
 
         children.add(child);
+        dispatch = null;
     }
 
     public void setChildren(Collection<? extends TracerCommand> children) {
@@ -359,4 +589,130 @@ public abstract class TracerCommand implements Registrable, TracerCommandExecuto
     public void setUseDefaultTabCompleter(boolean useDefaultTabCompleter) {
         this.useDefaultTabCompleter = useDefaultTabCompleter;
     }
+
+    /**
+     * @param asyncTabComplete whether {@link #tabCompleteAsync(CommandSender, String, String[])} is
+     *                         called on the worker pool, returning the best known suggestions meanwhile
+     */
+    public void setAsyncTabComplete(boolean asyncTabComplete) {
+        this.asyncTabComplete = asyncTabComplete;
+    }
+
+    /**
+     * @param tabCompleteExpiry the milliseconds async suggestions are cached for
+     */
+    public void setTabCompleteExpiry(long tabCompleteExpiry) {
+        if (tabCompleteExpiry < 0) {
+            throw new IllegalArgumentException("tabCompleteExpiry cannot be negative");
+        }
+
+        this.tabCompleteExpiry = tabCompleteExpiry;
+        this.asyncTab = null;
+    }
+
+    /**
+     * Executions rejected as busy, or by {@link #refundLimit(CommandSender)},
+     * are not charged the cooldown or the rate limit.
+     *
+     * @param cooldown the milliseconds a player must wait between executions, or 0 for none
+     */
+    public void setCooldown(long cooldown) {
+        if (cooldown < 0) {
+            throw new IllegalArgumentException("cooldown cannot be negative");
+        }
+
+        this.cooldown = cooldown;
+        this.limiter = null;
+    }
+
+    /**
+     * Limits each player to a number of executions per period, with bursts
+     * of up to that number.
+     *
+     * @param permits the executions per period, or 0 for no limit
+     * @param period  the period in milliseconds
+     */
+    public void setRateLimit(int permits, long period) {
+        if (permits < 0) {
+            throw new IllegalArgumentException("permits cannot be negative");
+        }
+
+        if (permits > 0 && period <= 0) {
+            throw new IllegalArgumentException("period must be positive");
+        }
+
+        this.ratePermits = permits;
+        this.ratePeriod = period;
+        this.limiter = null;
+    }
+
+    /**
+     * @param maxInFlight the maximum asynchronous executions running at once, including those
+     *                    whose future has yet to complete, or 0 for no limit
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 0) {
+            throw new IllegalArgumentException("maxInFlight cannot be negative");
+        }
+
+        this.maxInFlight = maxInFlight;
+        this.limiter = null;
+    }
+
+    /**
+     * @param maxQueued the maximum executions queued by {@link BusyPolicy#QUEUE}
+     */
+    public void setMaxQueued(int maxQueued) {
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("maxQueued cannot be negative");
+        }
+
+        this.maxQueued = maxQueued;
+        this.limiter = null;
+    }
+
+    public void setBusyPolicy(BusyPolicy busyPolicy) {
+        this.busyPolicy = Objects.requireNonNull(busyPolicy, "busyPolicy");
+        this.limiter = null;
+    }
+
+    /**
+     * @param cooldownMsg the message sent to a limited player, {@code {time}} is replaced with the time remaining
+     */
+    public void setCooldownMsg(String cooldownMsg) {
+        this.cooldownMsg = cooldownMsg;
+    }
+
+    public void setBusyMsg(String busyMsg) {
+        this.busyMsg = busyMsg;
+    }
+
+    /**
+     * @param arguments the schema used for tab completion and the usage, and
+     *                  to parse the arguments of an {@link ArgumentCommand}
+     */
+    public void setArguments(ArgumentSchema arguments) {
+        this.arguments = arguments;
+    }
+
+    public void setArguments(ArgumentSchema.Builder arguments) {
+        setArguments(arguments.build());
+    }
+
+    /**
+     * What happens to an asynchronous execution when the maximum are in flight.
+     */
+    public enum BusyPolicy {
+
+        /**
+         * The execution is rejected and the sender is told the command is busy.
+         */
+        REJECT,
+
+        /**
+         * The execution waits for one in flight to finish, up to the maximum queued.
+         */
+        QUEUE
+
+    }
 }
@@ -2,6 +2,8 @@ package gg.tracer.commons.register.command;
 
 import org.bukkit.command.CommandSender;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author Bradley Steele
  */
@@ -9,4 +11,16 @@ public interface TracerCommandExecutor {
 
     void execute(CommandSender sender, String[] args);
 
+    /**
+     * Executes an asynchronous command on the plugin's command executor,
+     * override this to return work which completes later, e.g. a database
+     * query. The result is applied on the main thread: a {@link Runnable}
+     * is run, a {@link String} or {@link Iterable} is sent to the sender.
+     *
+     * @return the future result, or null if there is nothing more to do
+     */
+    default CompletableFuture<?> executeAsync(CommandSender sender, String[] args) {
+        execute(sender, args);
+        return null;
+    }
 }
@@ -3,6 +3,7 @@ package gg.tracer.commons.register.command;
 import org.bukkit.command.CommandSender;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Bradley Steele
@@ -11,4 +12,19 @@ public interface TracerCommandTabCompleter {
 
     List<String> tabComplete(CommandSender sender, String alias, String[] args);
 
+    /**
+     * Completes the arguments, called on a worker thread. Override this
+     * for completions which are themselves asynchronous, e.g. a database
+     * query. The future may be cancelled if the sender types again before
+     * it completes.
+     * <p>
+     * The default calls {@link #tabComplete(CommandSender, String, String[])}
+     * on the calling thread, so it must be thread-safe. {@link TracerCommand}
+     * calls it on the main thread instead.
+     *
+     * @return the future suggestions
+     */
+    default CompletableFuture<List<String>> tabCompleteAsync(CommandSender sender, String alias, String[] args) {
+        return CompletableFuture.completedFuture(tabComplete(sender, alias, args));
+    }
 }
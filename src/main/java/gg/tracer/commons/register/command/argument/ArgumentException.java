@@ -0,0 +1,14 @@
+package gg.tracer.commons.register.command.argument;
+
+/**
+ * Thrown when an argument cannot be parsed, the message is sent to
+ * the command's sender.
+ *
+ * @author Bradley Steele
+ */
+public class ArgumentException extends Exception {
+
+    public ArgumentException(String message) {
+        super(message, null, false, false);
+    }
+}
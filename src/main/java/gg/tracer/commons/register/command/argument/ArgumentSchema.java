@@ -0,0 +1,343 @@
+package gg.tracer.commons.register.command.argument;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.*;
+
+/**
+ * Declares the arguments of a command, e.g. {@code <target> [amount] <reason...> [-s]}.
+ * <p>
+ * A schema is compiled when it is built, its arguments are kept in
+ * arrays and its flags in a single lookup by token, so a command's
+ * arguments are parsed in one pass. Flags and options are recognised
+ * anywhere, including after a greedy argument. The same schema is used
+ * for tab completion.
+ *
+ * @author Bradley Steele
+ */
+public final class ArgumentSchema {
+
+    private final Positional[] positionals;
+    private final Flag[] flags;
+    private final Map<String, Flag> tokens;
+    private final Map<String, Integer> slots;
+    private final String usage;
+
+    private ArgumentSchema(Builder builder) {
+        this.positionals = builder.positionals.toArray(new Positional[0]);
+        this.flags = builder.flags.toArray(new Flag[0]);
+        this.tokens = new HashMap<>();
+        this.slots = new HashMap<>();
+
+        StringJoiner usage = new StringJoiner(" ");
+        int slot = 0;
+
+        for (Positional positional : positionals) {
+            positional.slot = slot++;
+            slots.put(positional.name, positional.slot);
+
+            String name = positional.greedy ? positional.name + "..." : positional.name;
+            usage.add(positional.required ? "<" + name + ">" : "[" + name + "]");
+        }
+
+        for (Flag flag : flags) {
+            flag.slot = slot++;
+            slots.put(flag.name, flag.slot);
+            tokens.put("--" + flag.name, flag);
+
+            if (flag.shortName != 0) {
+                tokens.put("-" + flag.shortName, flag);
+            }
+
+            String token = flag.shortName != 0 ? "-" + flag.shortName : "--" + flag.name;
+            usage.add(flag.type != null ? "[" + token + " <" + flag.name + ">]" : "[" + token + "]");
+        }
+
+        this.usage = usage.toString();
+    }
+
+    /**
+     * @param sender the command's sender
+     * @param args   the command's arguments
+     * @return the parsed arguments
+     * @throws ArgumentException if an argument is missing or invalid
+     */
+    public Arguments parse(CommandSender sender, String[] args) throws ArgumentException {
+        Object[] values = new Object[slots.size()];
+        StringBuilder greedy = null;
+        int position = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            Flag flag = toFlag(arg);
+
+            if (flag != null) {
+                if (flag.type == null) {
+                    values[flag.slot] = Boolean.TRUE;
+                } else if (++i < args.length) {
+                    values[flag.slot] = flag.type.parse(sender, args[i]);
+                } else {
+                    throw new ArgumentException("&cMissing value for &e--" + flag.name + "&c.");
+                }
+
+                continue;
+            }
+
+            if (position == positionals.length) {
+                throw new ArgumentException("&cToo many arguments.");
+            }
+
+            Positional positional = positionals[position];
+
+            if (positional.greedy) {
+                // joined once rather than per token
+                if (greedy == null) {
+                    greedy = new StringBuilder(arg);
+                } else {
+                    greedy.append(' ').append(arg);
+                }
+
+                continue;
+            }
+
+            values[positional.slot] = positional.type.parse(sender, arg);
+            position++;
+        }
+
+        if (greedy != null) {
+            values[positionals[position++].slot] = greedy.toString();
+        }
+
+        for (; position < positionals.length; position++) {
+            Positional positional = positionals[position];
+
+            if (positional.required) {
+                throw new ArgumentException("&cMissing argument &e<" + positional.name + ">&c.");
+            }
+
+            values[positional.slot] = positional.fallback;
+        }
+
+        for (Flag flag : flags) {
+            if (values[flag.slot] == null) {
+                values[flag.slot] = flag.fallback;
+            }
+        }
+
+        return new Arguments(slots, values);
+    }
+
+    /**
+     * @param sender the command's sender
+     * @param args   the command's arguments, the last being completed
+     * @return the tab completions for the last argument
+     */
+    public List<String> suggest(CommandSender sender, String[] args) {
+        if (args.length == 0) {
+            return Collections.emptyList();
+        }
+
+        int last = args.length - 1;
+        int position = 0;
+
+        for (int i = 0; i < last; i++) {
+            Flag flag = toFlag(args[i]);
+
+            if (flag == null) {
+                if (position < positionals.length && !positionals[position].greedy) {
+                    position++;
+                }
+            } else if (flag.type != null && ++i == last) {
+                return flag.type.suggest(sender, args[last]);
+            }
+        }
+
+        String prefix = args[last];
+
+        if (!prefix.isEmpty() && prefix.charAt(0) == '-' && flags.length > 0) {
+            List<String> suggestions = new ArrayList<>();
+
+            for (String token : tokens.keySet()) {
+                if (token.startsWith("--") && token.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                    suggestions.add(token);
+                }
+            }
+
+            Collections.sort(suggestions);
+            return suggestions;
+        }
+
+        if (position < positionals.length) {
+            Positional positional = positionals[position];
+
+            if (positional.type != null) {
+                return positional.type.suggest(sender, prefix);
+            }
+        }
+
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the usage, e.g. {@code <target> [amount] <reason...> [-s]}
+     */
+    public String getUsage() {
+        return usage;
+    }
+
+    private Flag toFlag(String arg) {
+        // a lone "-" or an unknown token such as "-5" is an argument
+        if (flags.length == 0 || arg.length() < 2 || arg.charAt(0) != '-') {
+            return null;
+        }
+
+        return tokens.get(arg);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private static final class Positional {
+
+        private final String name;
+        private final ArgumentType<?> type;
+        private final boolean required;
+        private final boolean greedy;
+        private final Object fallback;
+        private int slot;
+
+        private Positional(String name, ArgumentType<?> type, boolean required, boolean greedy, Object fallback) {
+            this.name = name;
+            this.type = type;
+            this.required = required;
+            this.greedy = greedy;
+            this.fallback = fallback;
+        }
+    }
+
+    private static final class Flag {
+
+        private final String name;
+        private final char shortName;
+        private final ArgumentType<?> type;
+        private final Object fallback;
+        private int slot;
+
+        private Flag(String name, char shortName, ArgumentType<?> type, Object fallback) {
+            this.name = name;
+            this.shortName = shortName;
+            this.type = type;
+            this.fallback = fallback;
+        }
+    }
+
+    public static final class Builder {
+
+        private final List<Positional> positionals = new ArrayList<>();
+        private final List<Flag> flags = new ArrayList<>();
+        private final Set<String> names = new HashSet<>();
+        private final Set<Character> shortNames = new HashSet<>();
+
+        private Builder() {}
+
+        public Builder required(String name, ArgumentType<?> type) {
+            return positional(new Positional(name, Objects.requireNonNull(type, "type"), true, false, null));
+        }
+
+        public Builder optional(String name, ArgumentType<?> type) {
+            return optional(name, type, null);
+        }
+
+        public <T> Builder optional(String name, ArgumentType<T> type, T fallback) {
+            return positional(new Positional(name, Objects.requireNonNull(type, "type"), false, false, fallback));
+        }
+
+        /**
+         * @param name the name of the argument, which joins the remaining arguments with spaces
+         */
+        public Builder greedy(String name) {
+            return positional(new Positional(name, null, true, true, null));
+        }
+
+        public Builder greedy(String name, String fallback) {
+            return positional(new Positional(name, null, false, true, fallback));
+        }
+
+        /**
+         * @param name the name of the flag, given as {@code --name}
+         */
+        public Builder flag(String name) {
+            return flag(name, (char) 0);
+        }
+
+        /**
+         * @param name      the name of the flag, given as {@code --name}
+         * @param shortName the short name of the flag, given as {@code -c}
+         */
+        public Builder flag(String name, char shortName) {
+            return flag(new Flag(name, shortName, null, Boolean.FALSE));
+        }
+
+        public Builder option(String name, ArgumentType<?> type) {
+            return option(name, (char) 0, type);
+        }
+
+        public Builder option(String name, char shortName, ArgumentType<?> type) {
+            return option(name, shortName, type, null);
+        }
+
+        /**
+         * @param name      the name of the option, given as {@code --name <value>}
+         * @param shortName the short name of the option, given as {@code -c <value>}, or 0 for none
+         * @param type      the type of the value
+         * @param fallback  the value when the option is not given
+         */
+        public <T> Builder option(String name, char shortName, ArgumentType<T> type, T fallback) {
+            return flag(new Flag(name, shortName, Objects.requireNonNull(type, "type"), fallback));
+        }
+
+        public ArgumentSchema build() {
+            return new ArgumentSchema(this);
+        }
+
+        private Builder positional(Positional positional) {
+            if (!positionals.isEmpty() && positionals.get(positionals.size() - 1).greedy) {
+                throw new IllegalStateException("argument " + positional.name + " cannot follow a greedy argument");
+            }
+
+            if (positional.required && !positionals.isEmpty() && !positionals.get(positionals.size() - 1).required) {
+                throw new IllegalStateException("required argument " + positional.name + " cannot follow an optional argument");
+            }
+
+            name(positional.name);
+            positionals.add(positional);
+            return this;
+        }
+
+        private Builder flag(Flag flag) {
+            name(flag.name);
+
+            if (flag.shortName != 0 && !shortNames.add(flag.shortName)) {
+                throw new IllegalArgumentException("duplicate short name: " + flag.shortName);
+            }
+
+            if (flag.shortName == '-' || flag.shortName >= '0' && flag.shortName <= '9') {
+                throw new IllegalArgumentException("invalid short name: " + flag.shortName);
+            }
+
+            flags.add(flag);
+            return this;
+        }
+
+        private void name(String name) {
+            if (name == null || name.isEmpty() || name.indexOf(' ') >= 0) {
+                throw new IllegalArgumentException("invalid name: " + name);
+            }
+
+            if (!names.add(name)) {
+                throw new IllegalArgumentException("duplicate name: " + name);
+            }
+        }
+    }
+}
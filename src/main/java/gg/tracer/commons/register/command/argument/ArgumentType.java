@@ -0,0 +1,33 @@
+package gg.tracer.commons.register.command.argument;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parses a single token of a command's arguments into a typed value.
+ * Common types are provided by {@link ArgumentTypes}.
+ *
+ * @param <T> the type of the parsed value
+ * @author Bradley Steele
+ */
+public interface ArgumentType<T> {
+
+    /**
+     * @param sender the command's sender
+     * @param input  the token
+     * @return the value
+     * @throws ArgumentException if the token is not valid
+     */
+    T parse(CommandSender sender, String input) throws ArgumentException;
+
+    /**
+     * @param sender the command's sender
+     * @param prefix the partially typed token
+     * @return the tab completions for the token
+     */
+    default List<String> suggest(CommandSender sender, String prefix) {
+        return Collections.emptyList();
+    }
+}
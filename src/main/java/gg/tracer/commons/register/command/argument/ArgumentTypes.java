@@ -0,0 +1,262 @@
+package gg.tracer.commons.register.command.argument;
+
+import gg.tracer.commons.register.command.SuggestionIndex;
+import gg.tracer.commons.util.Players;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.util.StringUtil;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * The built-in {@link ArgumentType}s.
+ *
+ * @author Bradley Steele
+ */
+public final class ArgumentTypes {
+
+    private static final ArgumentType<String> WORD = (sender, input) -> input;
+
+    private static final ArgumentType<Player> PLAYER = new ArgumentType<>() {
+
+        @Override
+        public Player parse(CommandSender sender, String input) throws ArgumentException {
+            Player player = Players.getPlayer(input);
+
+            if (player == null || !canSee(sender, player)) {
+                throw new ArgumentException("&cPlayer &e" + input + "&c is not online.");
+            }
+
+            return player;
+        }
+
+        @Override
+        public List<String> suggest(CommandSender sender, String prefix) {
+            List<String> names = new ArrayList<>();
+
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                if (canSee(sender, player) && StringUtil.startsWithIgnoreCase(player.getName(), prefix)) {
+                    names.add(player.getName());
+                }
+            }
+
+            return names;
+        }
+    };
+
+    private static final ArgumentType<Duration> DURATION = new ArgumentType<>() {
+
+        private final List<String> units = List.of("s", "m", "h", "d", "w");
+
+        @Override
+        public Duration parse(CommandSender sender, String input) throws ArgumentException {
+            long seconds = 0;
+            long value = -1;
+
+            for (int i = 0, length = input.length(); i < length; i++) {
+                char c = input.charAt(i);
+
+                if (c >= '0' && c <= '9') {
+                    value = (value < 0 ? 0 : value) * 10 + (c - '0');
+
+                    if (value > Integer.MAX_VALUE) {
+                        throw invalid(input);
+                    }
+
+                    continue;
+                }
+
+                if (value < 0) {
+                    throw invalid(input);
+                }
+
+                seconds += value * switch (Character.toLowerCase(c)) {
+                    case 's' -> 1;
+                    case 'm' -> 60;
+                    case 'h' -> 60 * 60;
+                    case 'd' -> 24 * 60 * 60;
+                    case 'w' -> 7 * 24 * 60 * 60;
+                    default -> throw invalid(input);
+                };
+
+                value = -1;
+            }
+
+            // a trailing number without a unit is in seconds
+            if (value >= 0) {
+                seconds += value;
+            } else if (input.isEmpty()) {
+                throw invalid(input);
+            }
+
+            return Duration.ofSeconds(seconds);
+        }
+
+        @Override
+        public List<String> suggest(CommandSender sender, String prefix) {
+            if (prefix.isEmpty() || !Character.isDigit(prefix.charAt(prefix.length() - 1))) {
+                return Collections.emptyList();
+            }
+
+            List<String> suggestions = new ArrayList<>(units.size());
+
+            for (String unit : units) {
+                suggestions.add(prefix + unit);
+            }
+
+            return suggestions;
+        }
+
+        private ArgumentException invalid(String input) {
+            return new ArgumentException("&cInvalid duration &e" + input + "&c, e.g. &e1d12h&c.");
+        }
+    };
+
+    private ArgumentTypes() {}
+
+    public static ArgumentType<String> word() {
+        return WORD;
+    }
+
+    /**
+     * @param options the accepted values, matched ignoring case
+     * @return the type, its values are the matched option as declared
+     */
+    public static ArgumentType<String> choice(Collection<String> options) {
+        Map<String, String> lookup = new HashMap<>();
+
+        for (String option : options) {
+            lookup.putIfAbsent(option.toLowerCase(Locale.ROOT), option);
+        }
+
+        List<String> suggestions = List.copyOf(options);
+        SuggestionIndex index = new SuggestionIndex(suggestions);
+
+        return new ArgumentType<>() {
+
+            @Override
+            public String parse(CommandSender sender, String input) throws ArgumentException {
+                String option = lookup.get(input.toLowerCase(Locale.ROOT));
+
+                if (option == null) {
+                    throw new ArgumentException("&cInvalid option &e" + input + "&c, expected one of &e" + String.join("&c, &e", suggestions) + "&c.");
+                }
+
+                return option;
+            }
+
+            @Override
+            public List<String> suggest(CommandSender sender, String prefix) {
+                return index.suggest(prefix);
+            }
+        };
+    }
+
+    public static ArgumentType<Player> player() {
+        return PLAYER;
+    }
+
+    public static ArgumentType<Integer> integer() {
+        return integer(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public static ArgumentType<Integer> integer(int min, int max) {
+        return (sender, input) -> {
+            int value;
+
+            try {
+                value = Integer.parseInt(input);
+            } catch (NumberFormatException e) {
+                throw new ArgumentException("&e" + input + "&c is not a whole number.");
+            }
+
+            if (value < min || value > max) {
+                throw new ArgumentException(outOfRange(input, min, max, Integer.MIN_VALUE, Integer.MAX_VALUE));
+            }
+
+            return value;
+        };
+    }
+
+    public static ArgumentType<Double> decimal() {
+        return decimal(-Double.MAX_VALUE, Double.MAX_VALUE);
+    }
+
+    public static ArgumentType<Double> decimal(double min, double max) {
+        return (sender, input) -> {
+            double value;
+
+            try {
+                value = Double.parseDouble(input);
+            } catch (NumberFormatException e) {
+                throw new ArgumentException("&e" + input + "&c is not a number.");
+            }
+
+            if (!Double.isFinite(value) || value < min || value > max) {
+                throw new ArgumentException(outOfRange(input, min, max, -Double.MAX_VALUE, Double.MAX_VALUE));
+            }
+
+            return value;
+        };
+    }
+
+    /**
+     * @param type the enum, its constants are matched ignoring case
+     * @return the type
+     */
+    public static <E extends Enum<E>> ArgumentType<E> enumeration(Class<E> type) {
+        Map<String, E> lookup = new HashMap<>();
+        SuggestionIndex names = new SuggestionIndex();
+
+        for (E constant : type.getEnumConstants()) {
+            String name = constant.name().toLowerCase(Locale.ROOT);
+            lookup.put(name, constant);
+            names.add(name);
+        }
+
+        return new ArgumentType<>() {
+
+            @Override
+            public E parse(CommandSender sender, String input) throws ArgumentException {
+                E constant = lookup.get(input.toLowerCase(Locale.ROOT));
+
+                if (constant == null) {
+                    throw new ArgumentException("&cInvalid value &e" + input + "&c.");
+                }
+
+                return constant;
+            }
+
+            @Override
+            public List<String> suggest(CommandSender sender, String prefix) {
+                return names.suggest(prefix);
+            }
+        };
+    }
+
+    /**
+     * Parses durations such as {@code 90}, {@code 30s}, {@code 5m} or
+     * {@code 1w2d12h}, a number without a unit is in seconds.
+     */
+    public static ArgumentType<Duration> duration() {
+        return DURATION;
+    }
+
+    private static boolean canSee(CommandSender sender, Player player) {
+        return !(sender instanceof Player viewer) || viewer.canSee(player);
+    }
+
+    private static String outOfRange(String input, Object min, Object max, Object lowest, Object highest) {
+        if (min.equals(lowest)) {
+            return "&e" + input + "&c must be at most &e" + max + "&c.";
+        }
+
+        if (max.equals(highest)) {
+            return "&e" + input + "&c must be at least &e" + min + "&c.";
+        }
+
+        return "&e" + input + "&c must be between &e" + min + "&c and &e" + max + "&c.";
+    }
+}
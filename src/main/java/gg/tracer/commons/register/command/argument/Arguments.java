@@ -0,0 +1,51 @@
+package gg.tracer.commons.register.command.argument;
+
+import java.util.Map;
+
+/**
+ * The typed values parsed by an {@link ArgumentSchema}.
+ *
+ * @author Bradley Steele
+ */
+public final class Arguments {
+
+    private final Map<String, Integer> slots;
+    private final Object[] values;
+
+    Arguments(Map<String, Integer> slots, Object[] values) {
+        this.slots = slots;
+        this.values = values;
+    }
+
+    /**
+     * @param name the name of the argument, flag or option
+     * @return the value, or its default if it was not given
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String name) {
+        return (T) values[slot(name)];
+    }
+
+    public <T> T get(String name, T fallback) {
+        T value = get(name);
+        return value != null ? value : fallback;
+    }
+
+    public boolean has(String name) {
+        return values[slot(name)] != null;
+    }
+
+    public boolean hasFlag(String name) {
+        return values[slot(name)] == Boolean.TRUE;
+    }
+
+    private int slot(String name) {
+        Integer slot = slots.get(name);
+
+        if (slot == null) {
+            throw new IllegalArgumentException("unknown argument: " + name);
+        }
+
+        return slot;
+    }
+}
@@ -0,0 +1,64 @@
+package gg.tracer.commons.register.store;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A dense array of a {@link Store}'s keys, kept alongside the store
+ * so a uniformly random key can be picked in constant time. Removal
+ * moves the last key into the freed slot.
+ *
+ * @author Bradley Steele
+ */
+final class KeyIndex {
+
+    private final Map<Object, Integer> positions = new HashMap<>();
+    private Object[] keys = new Object[16];
+    private int size;
+
+    synchronized void add(Object key) {
+        if (positions.putIfAbsent(key, size) != null) {
+            return;
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+
+        keys[size++] = key;
+    }
+
+    synchronized void remove(Object key) {
+        Integer position = positions.remove(key);
+
+        if (position == null) {
+            return;
+        }
+
+        int last = --size;
+
+        if (position != last) {
+            Object moved = keys[last];
+            keys[position] = moved;
+            positions.put(moved, position);
+        }
+
+        keys[last] = null;
+    }
+
+    synchronized void clear() {
+        positions.clear();
+        keys = new Object[16];
+        size = 0;
+    }
+
+    synchronized Object random(Random random) {
+        return size > 0 ? keys[random.nextInt(size)] : null;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+}
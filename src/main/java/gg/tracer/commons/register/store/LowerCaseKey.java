@@ -0,0 +1,108 @@
+package gg.tracer.commons.register.store;
+
+import java.util.Locale;
+
+/**
+ * A reusable per-thread probe for looking up lower case {@link String}
+ * keys by a key in any case without allocating its lower case copy.
+ * <p>
+ * The probe's hash is the hash of the lower cased key and it equals
+ * a {@link String} holding the lower cased key. This only holds one
+ * way, so a probe may only be passed to lookups, such as get and
+ * containsKey, which compare the given key against the stored keys.
+ * It must never be stored or retained.
+ *
+ * @author Bradley Steele
+ */
+final class LowerCaseKey {
+
+    private static final ThreadLocal<LowerCaseKey> PROBE = ThreadLocal.withInitial(LowerCaseKey::new);
+
+    private String key;
+    private int hash;
+
+    private LowerCaseKey() {
+    }
+
+    /**
+     * @param key the key in any case
+     * @return the key itself if it is already lower case, otherwise its lower cased copy
+     */
+    static String lowerCase(String key) {
+        for (int i = 0, length = key.length(); i < length; i++) {
+            char c = key.charAt(i);
+
+            if (c >= 0x80 || c >= 'A' && c <= 'Z') {
+                return key.toLowerCase(Locale.ROOT);
+            }
+        }
+
+        return key;
+    }
+
+    /**
+     * @param key the key in any case
+     * @return the key itself if it is already lower case, otherwise
+     * the thread's probe or, for non-ascii keys, the lower cased key
+     */
+    static Object of(String key) {
+        int hash = 0;
+        boolean upper = false;
+
+        for (int i = 0, length = key.length(); i < length; i++) {
+            char c = key.charAt(i);
+
+            if (c >= 0x80) {
+                return key.toLowerCase(Locale.ROOT);
+            }
+
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+                upper = true;
+            }
+
+            hash = 31 * hash + c;
+        }
+
+        if (!upper) {
+            return key;
+        }
+
+        LowerCaseKey probe = PROBE.get();
+        probe.key = key;
+        probe.hash = hash;
+
+        return probe;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof String other) || other.length() != key.length()) {
+            return false;
+        }
+
+        for (int i = 0, length = key.length(); i < length; i++) {
+            char c = key.charAt(i);
+
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+
+            if (other.charAt(i) != c) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return key.toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,74 +1,218 @@
 package gg.tracer.commons.register.store;
 
-import com.google.common.collect.Lists;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import gg.tracer.commons.plugin.TracerPlugin;
 import gg.tracer.commons.register.Registrable;
+import gg.tracer.commons.register.worker.WorkerScheduler;
 import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 
+import java.io.File;
+import java.lang.reflect.Type;
 import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 /**
+ * A keyed collection of values with the registrable lifecycle.
+ * <p>
+ * By default a store is backed by a {@link HashMap} and must only be
+ * used from one thread. A store that is shared with async workers or
+ * commands should call {@link #setConcurrent(boolean)} in its constructor:
+ * it is then backed by a {@link ConcurrentHashMap}, reads are lock-free,
+ * the {@code compute}/{@code merge} operations are atomic and iteration
+ * is weakly consistent, never throwing {@link ConcurrentModificationException}.
+ * <p>
+ * A store can also be bounded: values may expire a set time after they
+ * were last written or accessed, and the store may be limited to a
+ * maximum size, evicting the least recently used values. Bounded stores
+ * are backed by a Guava {@link Cache} (and are always concurrent),
+ * expired values are cleaned up as the store is used and periodically
+ * off the server thread.
+ * <p>
+ * A store can be made persistent with {@link #setPersistent(String, Type, Type)}:
+ * changes are journaled to an append-only log in the plugin's data folder,
+ * flushed in batches off the server thread and compacted in the background.
+ * The log is replayed asynchronously when the store is registered, the first
+ * use of the store waits for it to finish. A crash loses at most the changes
+ * made since the last flush. Values are serialized when flushed, a value that
+ * is mutated in place must be stored again for the change to be journaled.
+ * Unregistering a persistent store flushes it on the calling thread, which
+ * blocks the server thread for as long as the final write takes. A store
+ * cannot be both persistent and bounded, as evictions would be journaled
+ * as removals.
+ * <p>
+ * Concurrent stores cannot hold null values, storing null drops the key.
+ * The {@link #all()}, {@link #keys()} and {@link #values()} views are
+ * live and modifiable, changes made through them go through the store's
+ * methods so that its indexes stay up to date. Secondary indexes of the values by their
+ * attributes can be added with {@link #addIndex(Function)}.
+ * <p>
+ * The {@link String} overloads are case-insensitive: keys are stored
+ * lower cased (in {@link Locale#ROOT}) and looked up without allocating
+ * a lower cased copy of the given key. Storing and dropping only copy a
+ * key which is not already lower case.
+ *
  * @author Bradley Steele
  */
 public class Store<T> implements Registrable, Listener {
 
     private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int RANDOM_ATTEMPTS = 16;
+    private static final long CLEANUP_PERIOD = TimeUnit.SECONDS.toMillis(30);
+
+    public static final long DEFAULT_FLUSH_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+
+    private Map<Object, T> store = new HashMap<>();
+    private final Map<Object, T> view = new View();
+    private boolean concurrent = false;
+    private boolean fastRandom = false;
+
+    // bounded
+    private Cache<Object, T> cache;
+    private long expireAfterAccess;
+    private long expireAfterWrite;
+    private long maximumSize = -1;
+    private RemovalListener<Object, T> removalListener;
+    private WorkerScheduler.Task cleanup;
+
+    // persistent
+    private String journalPath;
+    private Type keyType;
+    private Type valueType;
+    private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+    private StoreJournal journal;
+    private WorkerScheduler.Task flush;
+    private volatile CompletableFuture<Void> loading;
+
+    private final KeyIndex keyIndex = new KeyIndex();
+    private final List<StoreIndex<T, ?>> indexes = new CopyOnWriteArrayList<>();
 
-    private final Map<Object, T> store = new HashMap<>();
     protected TracerPlugin plugin;
 
     @Override
     public final void internalRegister() {
         plugin.getPluginManager().registerEvents(this, plugin);
+
+        if (cache != null && cleanup == null) {
+            cleanup = plugin.getWorkerScheduler().schedule(getClass().getSimpleName() + "-cleanup", cache::cleanUp, CLEANUP_PERIOD, CLEANUP_PERIOD, false, 1, false);
+        }
+
+        if (journalPath != null && journal == null) {
+            journal = new StoreJournal(new File(plugin.getDataFolder(), journalPath), keyType, valueType, plugin.logger);
+            loading = CompletableFuture.runAsync(this::load, plugin.getWorkerScheduler().getExecutor());
+            flush = plugin.getWorkerScheduler().schedule(getClass().getSimpleName() + "-flush", this::flush, flushInterval, flushInterval, false, 1, false);
+        }
     }
 
     @Override
     public final void internalUnregister() {
         HandlerList.unregisterAll(this);
+
+        if (cleanup != null) {
+            cleanup.cancel();
+            cleanup = null;
+        }
+
+        if (journal != null) {
+            awaitLoad();
+
+            // the final flush runs on this thread so no change is lost
+            flush.cancel();
+            flush = null;
+
+            journal.flush(store);
+            journal = null;
+            loading = null;
+        }
+
         store.clear();
+        keyIndex.clear();
+        indexes.forEach(StoreIndex::clear);
     }
 
     public Map<Object, T> all() {
-        return store;
+        awaitLoad();
+
+        return view;
     }
 
     public Set<Object> keys() {
-        return store.keySet();
+        awaitLoad();
+
+        return view.keySet();
     }
 
     public Collection<T> values() {
-        return store.values();
+        awaitLoad();
+
+        return view.values();
     }
 
     public boolean exists(Object key) {
+        awaitLoad();
+
         return key != null && store.containsKey(key);
     }
 
     public boolean exists(String key) {
-        return key != null && exists((Object) key.toLowerCase());
+        return key != null && exists(LowerCaseKey.of(key));
     }
 
     public T retrieve(Object key) {
+        awaitLoad();
+
         return key != null ? store.get(key) : null;
     }
 
     public T retrieve(String key) {
-        return key != null ? retrieve((Object) key.toLowerCase()) : null;
+        return key != null ? retrieve(LowerCaseKey.of(key)) : null;
     }
 
-    public T retrieveRandom(Collection<T> exclude) {
-        List<T> values = new ArrayList<>(store.values());
-        values.removeAll(exclude);
+    /**
+     * Returns a uniformly random value in constant time.
+     *
+     * @return a random value, or null if the store is empty
+     */
+    public T retrieveRandom() {
+        awaitLoad();
 
-        if (values.isEmpty()) {
-            return null;
+        Random random = random();
+
+        for (int i = 0; i < RANDOM_ATTEMPTS; i++) {
+            Object key = keyIndex.random(random);
+
+            if (key == null) {
+                return null;
+            }
+
+            T value = store.get(key);
+
+            // null if dropped by another thread since it was picked
+            if (value != null) {
+                return value;
+            }
+        }
+
+        return retrieveRandom(value -> true);
+    }
+
+    public T retrieveRandom(Collection<T> exclude) {
+        if (exclude.isEmpty()) {
+            return retrieveRandom();
         }
 
-        return values.get(RANDOM.nextInt(values.size()));
+        return retrieveRandom(value -> !exclude.contains(value));
     }
 
     @SafeVarargs
@@ -76,17 +220,46 @@ public class Store<T> implements Registrable, Listener {
         return retrieveRandom(Arrays.asList(exclude));
     }
 
+    /**
+     * Returns a uniformly random value that matches the predicate.
+     * <p>
+     * Random values are drawn from the key index and rejected until
+     * one matches, if none is found within a few attempts the values
+     * are reservoir sampled instead. Neither allocates a copy of the
+     * store.
+     *
+     * @param predicate the predicate
+     * @return a random matching value, or null if none match
+     */
     public T retrieveRandom(Predicate<T> predicate) {
-        List<T> values = store.values()
-                .stream()
-                .filter(predicate)
-                .collect(Collectors.toList());
+        awaitLoad();
 
-        if (values.isEmpty()) {
-            return null;
+        Random random = random();
+
+        for (int i = 0; i < RANDOM_ATTEMPTS; i++) {
+            Object key = keyIndex.random(random);
+
+            if (key == null) {
+                return null;
+            }
+
+            T value = store.get(key);
+
+            if (value != null && predicate.test(value)) {
+                return value;
+            }
+        }
+
+        T chosen = null;
+        int matches = 0;
+
+        for (T value : store.values()) {
+            if (predicate.test(value) && random.nextInt(++matches) == 0) {
+                chosen = value;
+            }
         }
 
-        return values.get(RANDOM.nextInt(values.size()));
+        return chosen;
     }
 
     public T store(Object key, T value) {
@@ -94,7 +267,34 @@ public class Store<T> implements Registrable, Listener {
             return null;
         }
 
-        return store.put(key, value);
+        awaitLoad();
+
+        if (value == null && isConcurrent()) {
+            return drop(key);
+        }
+
+        if (value == null) {
+            // a plain store keeps the key with a null value
+            boolean present = store.containsKey(key);
+            T previous = store.put(key, null);
+
+            if (present) {
+                changed(key, previous, null);
+            }
+
+            return previous;
+        }
+
+        Object[] previous = new Object[1];
+
+        store.compute(key, (k, current) -> {
+            previous[0] = current;
+            changed(k, current, value);
+
+            return value;
+        });
+
+        return cast(previous[0]);
     }
 
     public T store(String key, T value) {
@@ -102,11 +302,116 @@ public class Store<T> implements Registrable, Listener {
             return null;
         }
 
-        return store((Object) key.toLowerCase(), value);
+        return store((Object) LowerCaseKey.lowerCase(key), value);
+    }
+
+    /**
+     * Stores a value only if the key is not already present.
+     *
+     * @return the existing value, or null if the value was stored
+     */
+    public T storeIfAbsent(Object key, T value) {
+        if (key == null || value == null) {
+            return null;
+        }
+
+        awaitLoad();
+
+        Object[] previous = new Object[1];
+
+        store.compute(key, (k, current) -> {
+            if (current != null) {
+                previous[0] = current;
+                return current;
+            }
+
+            changed(k, null, value);
+            return value;
+        });
+
+        return cast(previous[0]);
+    }
+
+    /**
+     * Returns the value of a key, computing and storing it if absent.
+     * This is atomic for concurrent stores.
+     */
+    public T computeIfAbsent(Object key, Function<Object, ? extends T> function) {
+        if (key == null) {
+            return null;
+        }
+
+        awaitLoad();
+
+        return store.computeIfAbsent(key, k -> {
+            T value = function.apply(k);
+
+            if (value != null) {
+                changed(k, null, value);
+            }
+
+            return value;
+        });
+    }
+
+    /**
+     * Recomputes the value of a present key, a null result drops it.
+     * This is atomic for concurrent stores.
+     */
+    public T computeIfPresent(Object key, BiFunction<Object, ? super T, ? extends T> function) {
+        if (key == null) {
+            return null;
+        }
+
+        awaitLoad();
+
+        return store.computeIfPresent(key, (k, current) -> {
+            T value = function.apply(k, current);
+            changed(k, current, value);
+
+            return value;
+        });
+    }
+
+    /**
+     * Computes the value of a key from its current value (or null),
+     * a null result drops it. This is atomic for concurrent stores.
+     */
+    public T compute(Object key, BiFunction<Object, ? super T, ? extends T> function) {
+        if (key == null) {
+            return null;
+        }
+
+        awaitLoad();
+
+        return store.compute(key, (k, current) -> {
+            T value = function.apply(k, current);
+
+            if (current != null || value != null) {
+                changed(k, current, value);
+            }
+
+            return value;
+        });
+    }
+
+    /**
+     * Stores the value if the key is absent, otherwise merges it with
+     * the current value, a null result drops it. This is atomic for
+     * concurrent stores.
+     */
+    public T merge(Object key, T value, BiFunction<? super T, ? super T, ? extends T> function) {
+        if (key == null || value == null) {
+            return null;
+        }
+
+        return compute(key, (k, current) -> current == null ? value : function.apply(current, value));
     }
 
     public void storeAll(Map<Object, ? extends T> map) {
-        store.putAll(map);
+        for (Map.Entry<Object, ? extends T> entry : map.entrySet()) {
+            store(entry.getKey(), entry.getValue());
+        }
     }
 
     public T drop(Object key) {
@@ -114,7 +419,28 @@ public class Store<T> implements Registrable, Listener {
             return null;
         }
 
-        return store.remove(key);
+        awaitLoad();
+
+        if (!isConcurrent() && store.get(key) == null) {
+            // a plain store may hold the key with a null value
+            if (store.containsKey(key)) {
+                store.remove(key);
+                changed(key, null, null);
+            }
+
+            return null;
+        }
+
+        Object[] previous = new Object[1];
+
+        store.computeIfPresent(key, (k, current) -> {
+            previous[0] = current;
+            changed(k, current, null);
+
+            return null;
+        });
+
+        return cast(previous[0]);
     }
 
     public T drop(String key) {
@@ -122,6 +448,498 @@ public class Store<T> implements Registrable, Listener {
             return null;
         }
 
-        return drop((Object) key.toLowerCase());
+        return drop((Object) LowerCaseKey.lowerCase(key));
+    }
+
+    public int size() {
+        awaitLoad();
+
+        return store.size();
+    }
+
+    public boolean isConcurrent() {
+        return concurrent || cache != null;
+    }
+
+    /**
+     * Appends pending changes of a persistent store to its journal,
+     * this happens automatically every flush interval.
+     */
+    public void flush() {
+        StoreJournal journal = this.journal;
+
+        if (journal != null) {
+            awaitLoad();
+            journal.flush(store);
+        }
+    }
+
+    public boolean isPersistent() {
+        return journalPath != null;
+    }
+
+    /**
+     * Makes this store persistent, this should be called in the
+     * constructor while the store is empty. Persistent stores are
+     * always concurrent.
+     *
+     * @param path      the journal's path relative to the plugin's data folder
+     * @param keyType   the type of the keys, for gson
+     * @param valueType the type of the values, for gson
+     */
+    public void setPersistent(String path, Type keyType, Type valueType) {
+        if (path == null || keyType == null || valueType == null) {
+            throw new IllegalArgumentException("path, keyType and valueType cannot be null");
+        }
+
+        if (journal != null) {
+            throw new IllegalStateException("persistence cannot be changed while the store is registered");
+        }
+
+        if (cache != null) {
+            throw new IllegalStateException("a bounded store cannot be persistent");
+        }
+
+        this.journalPath = path;
+        this.keyType = keyType;
+        this.valueType = valueType;
+
+        setConcurrent(true);
+    }
+
+    /**
+     * @param flushInterval the time between journal flushes in milliseconds
+     */
+    public void setFlushInterval(long flushInterval) {
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("flushInterval must be greater than 0");
+        }
+
+        this.flushInterval = flushInterval;
+    }
+
+    public boolean isBounded() {
+        return cache != null;
+    }
+
+    /**
+     * Adds a secondary index of the values by a single attribute, this
+     * should be called in the constructor.
+     *
+     * @param extractor the function extracting a value's attribute, may return null
+     * @param <A>       the attribute type
+     * @return the index
+     */
+    public <A> StoreIndex<T, A> addIndex(Function<? super T, ? extends A> extractor) {
+        if (extractor == null) {
+            throw new IllegalArgumentException("extractor cannot be null");
+        }
+
+        return addMultiIndex(value -> {
+            A attribute = extractor.apply(value);
+            return attribute != null ? Collections.singletonList(attribute) : null;
+        });
+    }
+
+    /**
+     * Adds a secondary index of the values by a multi-valued attribute,
+     * such as tags. This should be called in the constructor.
+     *
+     * @param extractor the function extracting a value's attributes, may return null
+     * @param <A>       the attribute type
+     * @return the index
+     */
+    public <A> StoreIndex<T, A> addMultiIndex(Function<? super T, ? extends Collection<? extends A>> extractor) {
+        if (extractor == null) {
+            throw new IllegalArgumentException("extractor cannot be null");
+        }
+
+        StoreIndex<T, A> index = new StoreIndex<>(this, extractor);
+        indexes.add(index);
+
+        // index anything already stored, reading rather than writing the
+        // entries so a bounded store's write times are left alone
+        for (Map.Entry<Object, T> entry : store.entrySet()) {
+            if (entry.getValue() != null) {
+                index.update(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Removes expired values now rather than waiting for them to be
+     * cleaned up as the store is used.
+     */
+    public void cleanUp() {
+        if (cache != null) {
+            cache.cleanUp();
+        }
+    }
+
+    /**
+     * Sets whether this store is safe to use from multiple threads,
+     * this should be called in the constructor while the store is empty.
+     *
+     * @param concurrent true to back the store by a {@link ConcurrentHashMap}
+     */
+    public void setConcurrent(boolean concurrent) {
+        if (this.concurrent == concurrent) {
+            return;
+        }
+
+        if (!store.isEmpty()) {
+            throw new IllegalStateException("concurrency cannot be changed while the store has values");
+        }
+
+        this.concurrent = concurrent;
+        rebuild();
+    }
+
+    /**
+     * Expires values the given time after they were last read or
+     * written, this should be called in the constructor while the
+     * store is empty.
+     *
+     * @param duration the duration, 0 to never expire
+     * @param unit     the unit of the duration
+     */
+    public void setExpireAfterAccess(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("duration cannot be negative");
+        }
+
+        this.expireAfterAccess = unit.toNanos(duration);
+        rebuild();
+    }
+
+    /**
+     * Expires values the given time after they were last written,
+     * this should be called in the constructor while the store is empty.
+     *
+     * @param duration the duration, 0 to never expire
+     * @param unit     the unit of the duration
+     */
+    public void setExpireAfterWrite(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("duration cannot be negative");
+        }
+
+        this.expireAfterWrite = unit.toNanos(duration);
+        rebuild();
+    }
+
+    /**
+     * Limits the number of values, evicting the least recently used
+     * values as the limit is approached. This should be called in
+     * the constructor while the store is empty.
+     *
+     * @param maximumSize the maximum size, -1 for no limit
+     */
+    public void setMaximumSize(long maximumSize) {
+        if (maximumSize < -1) {
+            throw new IllegalArgumentException("maximumSize must be -1 or greater");
+        }
+
+        this.maximumSize = maximumSize;
+        rebuild();
+    }
+
+    /**
+     * Sets a listener notified whenever a value of a bounded store
+     * is removed, whether it was dropped, replaced, expired or evicted.
+     * The listener may be called from any thread.
+     *
+     * @param removalListener the listener
+     */
+    public void setRemovalListener(RemovalListener<Object, T> removalListener) {
+        this.removalListener = removalListener;
+        rebuild();
+    }
+
+    private void rebuild() {
+        if (!store.isEmpty()) {
+            throw new IllegalStateException("the store cannot be reconfigured while it has values");
+        }
+
+        if (expireAfterAccess > 0 || expireAfterWrite > 0 || maximumSize >= 0) {
+            if (journalPath != null) {
+                throw new IllegalStateException("a persistent store cannot be bounded");
+            }
+
+            CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+
+            if (expireAfterAccess > 0) {
+                builder.expireAfterAccess(expireAfterAccess, TimeUnit.NANOSECONDS);
+            }
+
+            if (expireAfterWrite > 0) {
+                builder.expireAfterWrite(expireAfterWrite, TimeUnit.NANOSECONDS);
+            }
+
+            if (maximumSize >= 0) {
+                builder.maximumSize(maximumSize);
+            }
+
+            cache = builder.removalListener(this::onRemoval).build();
+            store = cache.asMap();
+        } else {
+            cache = null;
+            store = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        }
+
+    }
+
+    private void onRemoval(RemovalNotification<Object, Object> notification) {
+        Object key = notification.getKey();
+        T value = cast(notification.getValue());
+
+        if (notification.wasEvicted() && key != null) {
+            // notifications arrive after the entry is gone, take the key's lock
+            // in case it has been stored again in the meantime
+            store.compute(key, (k, current) -> {
+                if (current == null) {
+                    changed(k, value, null);
+                }
+
+                return current;
+            });
+        }
+
+        if (removalListener != null) {
+            removalListener.onRemoval(RemovalNotification.create(key, value, notification.getCause()));
+        }
+    }
+
+    public boolean isFastRandom() {
+        return fastRandom;
+    }
+
+    /**
+     * Sets whether random retrieval uses {@link ThreadLocalRandom}
+     * rather than the default shared {@link SecureRandom}. This is
+     * faster and does not contend between threads, but the values
+     * picked are predictable.
+     *
+     * @param fastRandom true to use a fast non-secure random
+     */
+    public void setFastRandom(boolean fastRandom) {
+        this.fastRandom = fastRandom;
+    }
+
+    // called while the backing map holds the key's lock (if concurrent)
+    private void changed(Object key, T previous, T value) {
+        index(key, previous, value);
+
+        StoreJournal journal = this.journal;
+
+        if (journal != null) {
+            journal.record(key, value);
+        }
+    }
+
+    private void index(Object key, T previous, T value) {
+        if (previous == null && value != null) {
+            keyIndex.add(key);
+        } else if (value == null) {
+            keyIndex.remove(key);
+        }
+
+        for (StoreIndex<T, ?> index : indexes) {
+            index.update(key, value);
+        }
+    }
+
+    private void load() {
+        try {
+            Map<Object, T> values = journal.load();
+
+            for (Map.Entry<Object, T> entry : values.entrySet()) {
+                T value = entry.getValue();
+
+                if (value == null) {
+                    continue;
+                }
+
+                store.compute(entry.getKey(), (k, current) -> {
+                    index(k, current, value);
+                    return value;
+                });
+            }
+
+            plugin.logger.info("Loaded &a%s&r values from store journal &a%s&r", values.size(), journalPath);
+        } catch (Throwable t) {
+            plugin.logger.error("A Throwable was caught while loading store journal &c%s&r:", journalPath);
+            plugin.logger.exception(t);
+        }
+    }
+
+    void awaitLoad() {
+        CompletableFuture<Void> loading = this.loading;
+
+        if (loading != null && !loading.isDone()) {
+            loading.join();
+        }
+    }
+
+    private Random random() {
+        return fastRandom ? ThreadLocalRandom.current() : RANDOM;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T cast(Object value) {
+        return (T) value;
+    }
+
+    /**
+     * The live view of the store, writes and removals go through the
+     * store so the change hook sees them.
+     */
+    private final class View extends AbstractMap<Object, T> {
+
+        private final Set<Entry<Object, T>> entries = new AbstractSet<>() {
+
+            @Override
+            public Iterator<Entry<Object, T>> iterator() {
+                return new ViewIterator();
+            }
+
+            @Override
+            public int size() {
+                return store.size();
+            }
+        };
+
+        private final Set<Object> keys = new AbstractSet<>() {
+
+            @Override
+            public Iterator<Object> iterator() {
+                Iterator<Entry<Object, T>> iterator = new ViewIterator();
+
+                return new Iterator<>() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Object next() {
+                        return iterator.next().getKey();
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return store.size();
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return store.containsKey(key);
+            }
+
+            @Override
+            public boolean remove(Object key) {
+                if (!store.containsKey(key)) {
+                    return false;
+                }
+
+                drop(key);
+                return true;
+            }
+        };
+
+        @Override
+        public Set<Entry<Object, T>> entrySet() {
+            return entries;
+        }
+
+        @Override
+        public Set<Object> keySet() {
+            return keys;
+        }
+
+        @Override
+        public int size() {
+            return store.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return store.containsKey(key);
+        }
+
+        @Override
+        public T get(Object key) {
+            return store.get(key);
+        }
+
+        @Override
+        public T put(Object key, T value) {
+            return store(key, value);
+        }
+
+        @Override
+        public T remove(Object key) {
+            return drop(key);
+        }
+
+        @Override
+        public void clear() {
+            for (Object key : new ArrayList<>(store.keySet())) {
+                drop(key);
+            }
+        }
+    }
+
+    private final class ViewIterator implements Iterator<Map.Entry<Object, T>> {
+
+        private final Iterator<Map.Entry<Object, T>> iterator = store.entrySet().iterator();
+        private Map.Entry<Object, T> last;
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public Map.Entry<Object, T> next() {
+            Map.Entry<Object, T> entry = iterator.next();
+            last = entry;
+
+            return new AbstractMap.SimpleEntry<>(entry) {
+
+                @Override
+                public T setValue(T value) {
+                    super.setValue(value);
+                    return store(entry.getKey(), value);
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+
+            if (isConcurrent()) {
+                // iteration of a concurrent map tolerates removal
+                drop(last.getKey());
+            } else {
+                iterator.remove();
+                changed(last.getKey(), last.getValue(), null);
+            }
+
+            last = null;
+        }
     }
 }
@@ -0,0 +1,141 @@
+package gg.tracer.commons.register.store;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A secondary index of a {@link Store}'s values by an attribute, e.g.
+ * arenas by world or kits by tag. Created with {@link Store#addIndex(Function)}
+ * or {@link Store#addMultiIndex(Function)} and kept up to date as values
+ * are stored and dropped.
+ * <p>
+ * Attributes are extracted when a value is stored, a value that is
+ * mutated in place must be stored again for its attributes to be
+ * re-indexed. Null attributes are not indexed.
+ *
+ * @param <T> the value type
+ * @param <A> the attribute type
+ * @author Bradley Steele
+ */
+public final class StoreIndex<T, A> {
+
+    private final Store<T> store;
+    private final Function<? super T, ? extends Collection<? extends A>> extractor;
+
+    private final Map<A, Map<Object, T>> buckets = new ConcurrentHashMap<>();
+    private final Map<Object, Collection<? extends A>> attributes = new ConcurrentHashMap<>();
+
+    StoreIndex(Store<T> store, Function<? super T, ? extends Collection<? extends A>> extractor) {
+        this.store = store;
+        this.extractor = extractor;
+    }
+
+    // called while the store holds the key's lock (if concurrent)
+    void update(Object key, T value) {
+        Collection<? extends A> previous = value != null ? attributes.get(key) : attributes.remove(key);
+
+        if (previous != null) {
+            for (A attribute : previous) {
+                buckets.computeIfPresent(attribute, (a, bucket) -> {
+                    bucket.remove(key);
+                    return bucket.isEmpty() ? null : bucket;
+                });
+            }
+        }
+
+        if (value == null) {
+            return;
+        }
+
+        Collection<? extends A> extracted = extractor.apply(value);
+
+        if (extracted == null || extracted.isEmpty()) {
+            attributes.remove(key);
+            return;
+        }
+
+        List<A> current = new ArrayList<>(extracted.size());
+
+        for (A attribute : extracted) {
+            if (attribute == null || current.contains(attribute)) {
+                continue;
+            }
+
+            current.add(attribute);
+            buckets.compute(attribute, (a, bucket) -> {
+                if (bucket == null) {
+                    bucket = new ConcurrentHashMap<>();
+                }
+
+                bucket.put(key, value);
+                return bucket;
+            });
+        }
+
+        attributes.put(key, current);
+    }
+
+    void clear() {
+        buckets.clear();
+        attributes.clear();
+    }
+
+    /**
+     * @param attribute the attribute
+     * @return a read-only view of the values with the attribute.
+     */
+    public Collection<T> retrieve(A attribute) {
+        Map<Object, T> bucket = bucket(attribute);
+        return bucket != null ? Collections.unmodifiableCollection(bucket.values()) : Collections.emptyList();
+    }
+
+    /**
+     * @param attribute the attribute
+     * @return any value with the attribute, or null if there is none.
+     */
+    public T retrieveAny(A attribute) {
+        Map<Object, T> bucket = bucket(attribute);
+
+        if (bucket != null) {
+            for (T value : bucket.values()) {
+                return value;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param attribute the attribute
+     * @return a read-only view of the keys of the values with the attribute.
+     */
+    public Set<Object> keys(A attribute) {
+        Map<Object, T> bucket = bucket(attribute);
+        return bucket != null ? Collections.unmodifiableSet(bucket.keySet()) : Collections.emptySet();
+    }
+
+    public boolean exists(A attribute) {
+        return bucket(attribute) != null;
+    }
+
+    public int count(A attribute) {
+        Map<Object, T> bucket = bucket(attribute);
+        return bucket != null ? bucket.size() : 0;
+    }
+
+    /**
+     * @return a read-only view of the indexed attributes.
+     */
+    public Set<A> attributes() {
+        store.awaitLoad();
+
+        return Collections.unmodifiableSet(buckets.keySet());
+    }
+
+    private Map<Object, T> bucket(A attribute) {
+        store.awaitLoad();
+
+        return attribute != null ? buckets.get(attribute) : null;
+    }
+}
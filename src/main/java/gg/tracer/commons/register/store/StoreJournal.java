@@ -0,0 +1,234 @@
+package gg.tracer.commons.register.store;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import gg.tracer.commons.gson.StaticGson;
+import gg.tracer.commons.logging.TracerLog;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An append-only log of changes to a persistent {@link Store}.
+ * <p>
+ * Each line is a json object holding a key and either its new value
+ * or no value if it was dropped. Changes are coalesced in memory and
+ * appended in batches by {@link #flush(Map)}, once the log grows well
+ * beyond the number of live keys it is compacted by atomically
+ * replacing it with a snapshot of the store.
+ *
+ * @author Bradley Steele
+ */
+final class StoreJournal {
+
+    private static final String KEY = "k";
+    private static final String VALUE = "v";
+    private static final Object REMOVED = new Object();
+    private static final int COMPACT_MIN_RECORDS = 1024;
+    private static final int COMPACT_RATIO = 4;
+
+    private final File file;
+    private final Type keyType;
+    private final Type valueType;
+    private final TracerLog logger;
+
+    private final Object flushLock = new Object();
+    private Map<Object, Object> pending = new LinkedHashMap<>();
+    private long records;
+
+    StoreJournal(File file, Type keyType, Type valueType, TracerLog logger) {
+        this.file = file;
+        this.keyType = keyType;
+        this.valueType = valueType;
+        this.logger = logger;
+    }
+
+    synchronized void record(Object key, Object value) {
+        pending.put(key, value != null ? value : REMOVED);
+    }
+
+    /**
+     * Replays the log.
+     *
+     * @return the live keys and values
+     */
+    <T> Map<Object, T> load() {
+        Map<Object, T> values = new LinkedHashMap<>();
+
+        if (!file.exists()) {
+            return values;
+        }
+
+        Gson gson = StaticGson.getGson();
+        boolean corrupt = false;
+        long records = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                JsonObject record;
+
+                try {
+                    record = JsonParser.parseString(line).getAsJsonObject();
+                } catch (Exception e) {
+                    // a partially written record, skipped so later records are kept
+                    corrupt = true;
+                    continue;
+                }
+
+                Object key = gson.fromJson(record.get(KEY), keyType);
+                JsonElement value = record.get(VALUE);
+
+                if (value == null) {
+                    values.remove(key);
+                } else {
+                    values.put(key, gson.fromJson(value, valueType));
+                }
+
+                records++;
+            }
+        } catch (IOException e) {
+            logger.error("An IOException was caught while loading store journal &c%s&r:", file.getPath());
+            logger.exception(e);
+        }
+
+        synchronized (flushLock) {
+            this.records = records;
+
+            if (corrupt) {
+                logger.warn("Store journal &e%s&r has corrupt records, compacting", file.getPath());
+                compact(values, Map.of());
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Appends pending changes, compacting the log if it has grown
+     * too large.
+     *
+     * @param snapshot the live store, only read if compacting
+     */
+    void flush(Map<Object, ?> snapshot) {
+        synchronized (flushLock) {
+            Map<Object, Object> batch;
+
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+
+                batch = pending;
+                pending = new LinkedHashMap<>();
+            }
+
+            long length = file.length();
+
+            try {
+                write(batch, true);
+                records += batch.size();
+            } catch (IOException e) {
+                logger.error("An IOException was caught while flushing store journal &c%s&r:", file.getPath());
+                logger.exception(e);
+
+                // drop any partially written records before the batch is retried
+                truncate(length);
+
+                // keep the batch unless it has been superseded
+                synchronized (this) {
+                    batch.putAll(pending);
+                    pending = batch;
+                }
+
+                return;
+            }
+
+            if (records > COMPACT_MIN_RECORDS && records > (long) snapshot.size() * COMPACT_RATIO) {
+                compact(snapshot, batch);
+            }
+        }
+    }
+
+    private void truncate(long length) {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            if (out.length() > length) {
+                out.setLength(length);
+            }
+        } catch (IOException e) {
+            logger.error("An IOException was caught while truncating store journal &c%s&r:", file.getPath());
+            logger.exception(e);
+        }
+    }
+
+    private void compact(Map<Object, ?> snapshot, Map<Object, Object> batch) {
+        File tmp = new File(file.getPath() + ".tmp");
+
+        try {
+            Map<Object, Object> copy = new LinkedHashMap<>(snapshot);
+
+            // the snapshot may miss a change from the batch that was still being
+            // applied, replaying the batch after it is harmless: later changes
+            // are pending and will be appended after both
+            write(copy, tmp, false);
+            write(batch, tmp, true);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            records = copy.size() + batch.size();
+        } catch (IOException e) {
+            logger.error("An IOException was caught while compacting store journal &c%s&r:", file.getPath());
+            logger.exception(e);
+        }
+    }
+
+    private void write(Map<Object, Object> batch, boolean append) throws IOException {
+        write(batch, file, append);
+    }
+
+    private void write(Map<Object, Object> batch, File target, boolean append) throws IOException {
+        Gson gson = StaticGson.getGson();
+        File parent = target.getParentFile();
+
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("unable to create directory " + parent.getPath());
+        }
+
+        try (FileOutputStream out = new FileOutputStream(target, append);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (Map.Entry<Object, Object> entry : batch.entrySet()) {
+                JsonObject record = new JsonObject();
+                record.add(KEY, gson.toJsonTree(entry.getKey(), keyType));
+
+                if (entry.getValue() != REMOVED) {
+                    record.add(VALUE, gson.toJsonTree(entry.getValue(), valueType));
+                }
+
+                writer.write(gson.toJson(record));
+                writer.write('\n');
+            }
+
+            writer.flush();
+            out.getFD().sync();
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,504 @@
+package gg.tracer.commons.register.store;
+
+import gg.tracer.commons.plugin.TracerPlugin;
+import gg.tracer.commons.register.Registrable;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A store keyed by {@link UUID}, for per-player state.
+ * <p>
+ * Keys are kept as the two halves of each uuid in flat open-addressed
+ * arrays alongside an array of values, so lookups and stores allocate
+ * nothing: there are no entry nodes, no boxing and no uuid hashing. The
+ * {@code long} overloads avoid needing a {@link UUID} at all.
+ * <p>
+ * Like {@link Store}, a uuid store must only be used from one thread
+ * unless {@link #setConcurrent(boolean)} is called in its constructor,
+ * reads are then optimistic and lock-free unless they race a write.
+ * Stores cannot hold null values, storing null drops the key. With
+ * {@link #setDropOnQuit(boolean)} a player's value is dropped when they
+ * leave the server.
+ *
+ * @author Bradley Steele
+ */
+public class UUIDStore<T> implements Registrable, Listener {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] msbs;
+    private long[] lsbs;
+    private Object[] values;
+    private int size;
+    private int threshold;
+
+    private StampedLock lock;
+    private boolean dropOnQuit;
+
+    protected TracerPlugin plugin;
+
+    public UUIDStore() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public final void internalRegister() {
+        plugin.getPluginManager().registerEvents(this, plugin);
+    }
+
+    @Override
+    public final void internalUnregister() {
+        HandlerList.unregisterAll(this);
+
+        clear();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public final void onPlayerQuit(PlayerQuitEvent event) {
+        if (dropOnQuit) {
+            drop(event.getPlayer());
+        }
+    }
+
+    public boolean exists(UUID key) {
+        return key != null && exists(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    public boolean exists(Player player) {
+        return player != null && exists(player.getUniqueId());
+    }
+
+    public boolean exists(long msb, long lsb) {
+        return retrieve(msb, lsb) != null;
+    }
+
+    public T retrieve(UUID key) {
+        return key != null ? retrieve(key.getMostSignificantBits(), key.getLeastSignificantBits()) : null;
+    }
+
+    public T retrieve(Player player) {
+        return player != null ? retrieve(player.getUniqueId()) : null;
+    }
+
+    public T retrieve(long msb, long lsb) {
+        StampedLock lock = this.lock;
+
+        if (lock == null) {
+            return cast(get(msb, lsb));
+        }
+
+        long stamp = lock.tryOptimisticRead();
+        Object value = get(msb, lsb);
+
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+
+            try {
+                value = get(msb, lsb);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        return cast(value);
+    }
+
+    /**
+     * @param key   the key
+     * @param value the value, null drops the key
+     * @return the previous value, or null if there was none
+     */
+    public T store(UUID key, T value) {
+        if (key == null) {
+            return null;
+        }
+
+        return store(key.getMostSignificantBits(), key.getLeastSignificantBits(), value);
+    }
+
+    public T store(Player player, T value) {
+        return player != null ? store(player.getUniqueId(), value) : null;
+    }
+
+    public T store(long msb, long lsb, T value) {
+        if (value == null) {
+            return drop(msb, lsb);
+        }
+
+        long stamp = lockWrite();
+
+        try {
+            return cast(put(msb, lsb, value, false));
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the existing value, or null if the value was stored
+     */
+    public T storeIfAbsent(UUID key, T value) {
+        if (key == null || value == null) {
+            return null;
+        }
+
+        long stamp = lockWrite();
+
+        try {
+            return cast(put(key.getMostSignificantBits(), key.getLeastSignificantBits(), value, true));
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param key      the key
+     * @param function the function computing the value if the key is absent,
+     *                 called while holding the store's lock if it is concurrent
+     * @return the existing or computed value
+     */
+    public T computeIfAbsent(UUID key, Function<? super UUID, ? extends T> function) {
+        if (key == null) {
+            return null;
+        }
+
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        T value = retrieve(msb, lsb);
+
+        if (value != null) {
+            return value;
+        }
+
+        long stamp = lockWrite();
+
+        try {
+            value = cast(get(msb, lsb));
+
+            if (value == null) {
+                value = function.apply(key);
+
+                if (value != null) {
+                    put(msb, lsb, value, false);
+                }
+            }
+
+            return value;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    public T computeIfAbsent(Player player, Function<? super UUID, ? extends T> function) {
+        return player != null ? computeIfAbsent(player.getUniqueId(), function) : null;
+    }
+
+    /**
+     * @return the dropped value, or null if there was none
+     */
+    public T drop(UUID key) {
+        return key != null ? drop(key.getMostSignificantBits(), key.getLeastSignificantBits()) : null;
+    }
+
+    public T drop(Player player) {
+        return player != null ? drop(player.getUniqueId()) : null;
+    }
+
+    public T drop(long msb, long lsb) {
+        long stamp = lockWrite();
+
+        try {
+            return cast(remove(msb, lsb));
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Performs the action for each key and value. The action must not
+     * change the store unless it is concurrent, in which case it runs
+     * on a snapshot.
+     */
+    public void forEach(BiConsumer<UUID, T> action) {
+        if (lock != null) {
+            long stamp = lock.readLock();
+            List<Object[]> snapshot = new ArrayList<>(size);
+
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null) {
+                        snapshot.add(new Object[] {new UUID(msbs[i], lsbs[i]), values[i]});
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+
+            for (Object[] entry : snapshot) {
+                action.accept((UUID) entry[0], cast(entry[1]));
+            }
+
+            return;
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                action.accept(new UUID(msbs[i], lsbs[i]), cast(values[i]));
+            }
+        }
+    }
+
+    /**
+     * @return a snapshot of the keys.
+     */
+    public List<UUID> keys() {
+        List<UUID> keys = new ArrayList<>(size);
+        forEach((key, value) -> keys.add(key));
+        return keys;
+    }
+
+    /**
+     * @return a snapshot of the values.
+     */
+    public List<T> values() {
+        List<T> values = new ArrayList<>(size);
+        forEach((key, value) -> values.add(value));
+        return values;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        long stamp = lockWrite();
+
+        try {
+            allocate(INITIAL_CAPACITY);
+            size = 0;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    public boolean isConcurrent() {
+        return lock != null;
+    }
+
+    /**
+     * Makes this store safe to use from multiple threads, this should
+     * be called in the constructor.
+     *
+     * @param concurrent whether the store is shared between threads
+     */
+    public void setConcurrent(boolean concurrent) {
+        this.lock = concurrent ? new StampedLock() : null;
+    }
+
+    public boolean isDropOnQuit() {
+        return dropOnQuit;
+    }
+
+    /**
+     * @param dropOnQuit whether a player's value is dropped when they quit
+     */
+    public void setDropOnQuit(boolean dropOnQuit) {
+        this.dropOnQuit = dropOnQuit;
+    }
+
+    // table
+
+    // may race a writer when reading optimistically, so it must not
+    // fail or loop on a table that is being changed
+    private Object get(long msb, long lsb) {
+        long[] msbs = this.msbs;
+        long[] lsbs = this.lsbs;
+        Object[] values = this.values;
+
+        if (msbs.length != values.length || lsbs.length != values.length) {
+            return null;
+        }
+
+        int mask = values.length - 1;
+        int index = hash(msb, lsb) & mask;
+
+        for (int probes = 0; probes < values.length; probes++) {
+            Object value = values[index];
+
+            if (value == null) {
+                return null;
+            }
+
+            if (msbs[index] == msb && lsbs[index] == lsb) {
+                return value;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return null;
+    }
+
+    private Object put(long msb, long lsb, Object value, boolean ifAbsent) {
+        int mask = values.length - 1;
+        int index = hash(msb, lsb) & mask;
+
+        while (values[index] != null) {
+            if (msbs[index] == msb && lsbs[index] == lsb) {
+                Object previous = values[index];
+
+                if (!ifAbsent) {
+                    values[index] = value;
+                }
+
+                return previous;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        msbs[index] = msb;
+        lsbs[index] = lsb;
+        values[index] = value;
+
+        if (++size > threshold) {
+            resize(values.length * 2);
+        }
+
+        return null;
+    }
+
+    private Object remove(long msb, long lsb) {
+        int mask = values.length - 1;
+        int index = hash(msb, lsb) & mask;
+
+        while (values[index] != null) {
+            if (msbs[index] == msb && lsbs[index] == lsb) {
+                Object previous = values[index];
+                shiftBack(index, mask);
+                size--;
+
+                return previous;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return null;
+    }
+
+    // backward-shift deletion: move later entries of the probe run into
+    // the gap so lookups never need tombstones
+    private void shiftBack(int gap, int mask) {
+        int index = gap;
+
+        while (true) {
+            index = (index + 1) & mask;
+            Object value = values[index];
+
+            if (value == null) {
+                break;
+            }
+
+            int home = hash(msbs[index], lsbs[index]) & mask;
+
+            // the entry can fill the gap if its home is not within (gap, index]
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                msbs[gap] = msbs[index];
+                lsbs[gap] = lsbs[index];
+                values[gap] = value;
+                gap = index;
+            }
+        }
+
+        msbs[gap] = 0;
+        lsbs[gap] = 0;
+        values[gap] = null;
+    }
+
+    private void resize(int capacity) {
+        long[] oldMsbs = msbs;
+        long[] oldLsbs = lsbs;
+        Object[] oldValues = values;
+
+        long[] msbs = new long[capacity];
+        long[] lsbs = new long[capacity];
+        Object[] values = new Object[capacity];
+        int mask = capacity - 1;
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) {
+                continue;
+            }
+
+            int index = hash(oldMsbs[i], oldLsbs[i]) & mask;
+
+            while (values[index] != null) {
+                index = (index + 1) & mask;
+            }
+
+            msbs[index] = oldMsbs[i];
+            lsbs[index] = oldLsbs[i];
+            values[index] = oldValues[i];
+        }
+
+        this.msbs = msbs;
+        this.lsbs = lsbs;
+        this.values = values;
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void allocate(int capacity) {
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        values = new Object[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private long lockWrite() {
+        return lock != null ? lock.writeLock() : 0;
+    }
+
+    private void unlockWrite(long stamp) {
+        if (lock != null) {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static int hash(long msb, long lsb) {
+        // random (version 4) uuids are already well mixed, offline
+        // mode (version 3) uuids are not guaranteed to be
+        long hash = msb ^ lsb;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+
+        return (int) hash;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object value) {
+        return (T) value;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{size=" + size + ", capacity=" + values.length + '}';
+    }
+}
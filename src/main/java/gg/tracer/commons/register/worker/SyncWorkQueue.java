@@ -0,0 +1,134 @@
+package gg.tracer.commons.register.worker;
+
+import gg.tracer.commons.logging.TracerLog;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A queue of small units of main thread work. Units may be submitted
+ * from any thread, they are drained on the server thread each tick
+ * until the queue is empty or the tick's time budget is spent, the
+ * remainder carries over to the next tick.
+ *
+ * @author Bradley Steele
+ */
+public class SyncWorkQueue {
+
+    public static final long DEFAULT_BUDGET = 2;
+
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final long budget;
+
+    /**
+     * @param budget the time budget per tick in milliseconds
+     */
+    public SyncWorkQueue(long budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("budget must be greater than 0");
+        }
+
+        this.budget = budget;
+    }
+
+    public SyncWorkQueue() {
+        this(DEFAULT_BUDGET);
+    }
+
+    public void submit(Runnable work) {
+        if (work == null) {
+            throw new IllegalArgumentException("work cannot be null");
+        }
+
+        queue.add(work);
+        size.incrementAndGet();
+    }
+
+    /**
+     * Runs queued units until the queue is empty or the budget is
+     * spent. At least one unit is always run so the queue makes
+     * progress even if a single unit exceeds the budget.
+     *
+     * @param budgetNanos the time budget in nanoseconds
+     * @param logger      the logger to report exceptions to
+     * @return the number of units run
+     */
+    public int drain(long budgetNanos, TracerLog logger) {
+        return drain(budgetNanos, Integer.MAX_VALUE, logger);
+    }
+
+    private int drain(long budgetNanos, int limit, TracerLog logger) {
+        long deadline = System.nanoTime() + budgetNanos;
+        int ran = 0;
+        Runnable work;
+
+        while (ran < limit && (work = queue.poll()) != null) {
+            size.decrementAndGet();
+            ran++;
+
+            try {
+                work.run();
+            } catch (Throwable t) {
+                logger.error("A Throwable was caught while draining a sync work queue:");
+                logger.exception(t);
+            }
+
+            if (System.nanoTime() - deadline >= 0) {
+                break;
+            }
+        }
+
+        return ran;
+    }
+
+    public int drain(TracerLog logger) {
+        return drain(TimeUnit.MILLISECONDS.toNanos(budget), logger);
+    }
+
+    /**
+     * Runs the units queued when this is called regardless of the budget,
+     * units they queue in turn are discarded so that this always returns.
+     *
+     * @param logger the logger to report exceptions and discarded units to
+     * @return the number of units run
+     */
+    public int drainAll(TracerLog logger) {
+        int ran = drain(Long.MAX_VALUE / 2, size(), logger);
+        int discarded = size();
+
+        if (discarded > 0) {
+            logger.warn("Discarded &e%s&r units queued while draining a sync work queue", discarded);
+            clear();
+        }
+
+        return ran;
+    }
+
+    public void clear() {
+        while (queue.poll() != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the number of queued units.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * @return the time budget per tick in milliseconds.
+     */
+    public long getBudget() {
+        return budget;
+    }
+}
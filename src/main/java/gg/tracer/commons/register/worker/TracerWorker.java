@@ -3,19 +3,22 @@ package gg.tracer.commons.register.worker;
 import gg.tracer.commons.plugin.TracerPlugin;
 import gg.tracer.commons.register.Registrable;
 import gg.tracer.commons.util.Reflection;
+import gg.tracer.commons.util.VirtualThreads;
+import org.bukkit.Bukkit;
 import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 import org.bukkit.scheduler.BukkitTask;
 
-import java.util.concurrent.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Bradley Steele
  */
 public class TracerWorker implements Registrable, Listener, Runnable {
 
-    private static final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
     private static final boolean HAS_IS_CANCELLED;
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long OVERRUN_LOG_INTERVAL = TimeUnit.SECONDS.toNanos(10);
 
     static {
         HAS_IS_CANCELLED = Reflection.hasMethod(BukkitTask.class, "isCancelled");
@@ -28,39 +31,164 @@ public class TracerWorker implements Registrable, Listener, Runnable {
     private BukkitTask task;
     protected boolean sync;
 
-    // WorkerType.THREAD
+    // WorkerType.THREAD, WorkerType.VIRTUAL_THREAD
     private Thread thread;
-    protected boolean threadRunning = false;
+    protected volatile boolean threadRunning = false;
     protected String threadName;
 
-    // WorkerType.SCHEDULED_TASK
-    private ScheduledFuture<?> future;
+    // WorkerType.SCHEDULED_TASK, WorkerType.VIRTUAL_SCHEDULED_TASK
+    private WorkerScheduler.Task scheduled;
     protected boolean fixed;
+    protected int maxConcurrency = 1;
+    protected boolean isolated;
 
-    // shared (BUKKIT_TASK, SCHEDULED_TASK)
+    // shared (BUKKIT_TASK, SCHEDULED_TASK, VIRTUAL_SCHEDULED_TASK)
     protected long period;
     protected long delay;
+    protected long budget;
+
+    // sync work queue, any type
+    private SyncWorkQueue queue;
+    private BukkitTask queueTask;
+    private boolean registered;
+
+    private final WorkerMetrics metrics = new WorkerMetrics();
+    private final Runnable instrumented = this::runInstrumented;
+    private volatile long lastOverrunLog;
 
     @Override
     public final void internalRegister() {
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
         setRunning(true);
 
+        registered = true;
+        startQueue();
+
         plugin.logger.info("Registered worker: &a%s&r", getClass().getSimpleName());
     }
 
     @Override
     public final void internalUnregister() {
         HandlerList.unregisterAll(this);
+        registered = false;
 
         if (type != WorkerType.BUKKIT_TASK || plugin.isEnabled()) {
             setRunning(false);
         }
+
+        if (queueTask != null) {
+            if (plugin.isEnabled()) {
+                queueTask.cancel();
+            }
+
+            queueTask = null;
+        }
+
+        if (queue != null && !queue.isEmpty()) {
+            if (Bukkit.isPrimaryThread()) {
+                queue.drainAll(plugin.logger);
+            } else {
+                plugin.logger.warn("Discarded &e%s&r queued units of worker &e%s&r: unregistered off the server thread", queue.size(), getClass().getSimpleName());
+                queue.clear();
+            }
+        }
     }
 
     @Override
     public void run() {}
 
+    private void runInstrumented() {
+        long start = System.nanoTime();
+
+        try {
+            run();
+        } finally {
+            long duration = System.nanoTime() - start;
+
+            if (metrics.record(start, duration, getExpectedInterval(), type == WorkerType.BUKKIT_TASK && sync, getBudgetNanos())) {
+                onOverrun(start, duration);
+            }
+        }
+    }
+
+    private void startQueue() {
+        if (registered && queue != null && queueTask == null) {
+            queueTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::drainQueue, 1, 1);
+        }
+    }
+
+    private void drainQueue() {
+        long start = System.nanoTime();
+
+        queue.drain(plugin.logger);
+        metrics.recordTick(System.nanoTime() - start);
+    }
+
+    /**
+     * Queues a unit of work to run on the server thread. Queued work
+     * is drained each tick within the budget set by {@link #setQueueBudget(long)},
+     * anything left over carries on to the next tick.
+     *
+     * @param work the work to run
+     */
+    public void queue(Runnable work) {
+        if (queue == null) {
+            throw new IllegalStateException("setQueueBudget must be called first");
+        }
+
+        queue.submit(work);
+    }
+
+    /**
+     * @return the sync work queue, or null if one has not been enabled.
+     */
+    public SyncWorkQueue getQueue() {
+        return queue;
+    }
+
+    private void onOverrun(long start, long duration) {
+        long last = lastOverrunLog;
+
+        // avoid flooding the console when a worker is constantly behind
+        if (last != 0 && start - last < OVERRUN_LOG_INTERVAL) {
+            return;
+        }
+
+        lastOverrunLog = start;
+
+        plugin.logger.warn(
+                "Worker &e%s&r exceeded its budget: took &e%.2f&rms (budget: &e%.2f&rms, p99: &e%.2f&rms, overruns: &e%s&r, missed periods: &e%s&r)",
+                getClass().getSimpleName(),
+                WorkerMetrics.toMillis(duration),
+                WorkerMetrics.toMillis(getBudgetNanos()),
+                WorkerMetrics.toMillis(metrics.getP99Nanos()),
+                metrics.getOverruns(),
+                metrics.getMissedPeriods()
+        );
+    }
+
+    // nanoseconds between the start of two fixed-rate runs, 0 if not fixed-rate
+    private long getExpectedInterval() {
+        if (type == WorkerType.BUKKIT_TASK) {
+            return period * TICK_NANOS;
+        }
+
+        return isScheduledType() && fixed ? TimeUnit.MILLISECONDS.toNanos(period) : 0;
+    }
+
+    private long getBudgetNanos() {
+        if (budget > 0) {
+            return TimeUnit.MILLISECONDS.toNanos(budget);
+        }
+
+        if (type == WorkerType.BUKKIT_TASK) {
+            // a sync run should never take longer than a tick
+            return sync ? TICK_NANOS : period * TICK_NANOS;
+        }
+
+        return TimeUnit.MILLISECONDS.toNanos(period);
+    }
+
     private void setRunning(boolean run) {
         // null type is valid for workers not utilising a task/thread
         if (type == null) {
@@ -82,9 +210,9 @@ public class TracerWorker implements Registrable, Listener, Runnable {
                 }
 
                 if (sync) {
-                    task = plugin.getServer().getScheduler().runTaskTimer(plugin, this, delay, period);
+                    task = plugin.getServer().getScheduler().runTaskTimer(plugin, instrumented, delay, period);
                 } else {
-                    task = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this, delay, period);
+                    task = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, instrumented, delay, period);
                 }
             } else if (type == WorkerType.THREAD) {
                 if (threadName == null || threadName.isEmpty()) {
@@ -93,14 +221,16 @@ public class TracerWorker implements Registrable, Listener, Runnable {
                     thread = new Thread(this, threadName);
                 }
 
+                threadRunning = true;
+                thread.start();
+            } else if (type == WorkerType.VIRTUAL_THREAD) {
+                thread = VirtualThreads.newThread(threadName == null || threadName.isEmpty() ? getClass().getSimpleName() : threadName, this);
                 threadRunning = true;
                 thread.start();
             } else if (type == WorkerType.SCHEDULED_TASK) {
-                if (fixed) {
-                    future = executorService.scheduleAtFixedRate(this, delay, period, TimeUnit.MILLISECONDS);
-                } else {
-                    future = executorService.scheduleWithFixedDelay(this, delay, period, TimeUnit.MILLISECONDS);
-                }
+                scheduled = plugin.getWorkerScheduler().schedule(getClass().getSimpleName(), instrumented, delay, period, fixed, maxConcurrency, isolated);
+            } else if (type == WorkerType.VIRTUAL_SCHEDULED_TASK) {
+                scheduled = plugin.getWorkerScheduler().schedule(getClass().getSimpleName(), instrumented, delay, period, fixed, maxConcurrency, WorkerScheduler.Lane.VIRTUAL);
             }
         } else {
             if (type == WorkerType.BUKKIT_TASK) {
@@ -128,10 +258,17 @@ public class TracerWorker implements Registrable, Listener, Runnable {
 
                     thread = null;
                 }
-            } else if (type == WorkerType.SCHEDULED_TASK) {
-                if (future != null) {
-                    future.cancel(false);
-                    future = null;
+            } else if (type == WorkerType.VIRTUAL_THREAD) {
+                if (thread != null) {
+                    // blocking calls in a virtual thread are interruptible, no need to wait
+                    threadRunning = false;
+                    thread.interrupt();
+                    thread = null;
+                }
+            } else if (type == WorkerType.SCHEDULED_TASK || type == WorkerType.VIRTUAL_SCHEDULED_TASK) {
+                if (scheduled != null) {
+                    scheduled.cancel(type == WorkerType.VIRTUAL_SCHEDULED_TASK);
+                    scheduled = null;
                 }
             }
         }
@@ -140,9 +277,9 @@ public class TracerWorker implements Registrable, Listener, Runnable {
     public boolean isRunning() {
         return type == WorkerType.BUKKIT_TASK
                 ? (task != null && (!HAS_IS_CANCELLED || !task.isCancelled()))
-                : type == WorkerType.THREAD
+                : type == WorkerType.THREAD || type == WorkerType.VIRTUAL_THREAD
                 ? (thread != null && thread.isAlive() && !thread.isInterrupted())
-                : type == WorkerType.SCHEDULED_TASK && (future != null && !future.isDone());
+                : isScheduledType() && (scheduled != null && !scheduled.isCancelled());
     }
 
     public void setWorkerType(WorkerType type) {
@@ -160,7 +297,7 @@ public class TracerWorker implements Registrable, Listener, Runnable {
     public void setDelay(long delay) {
         checkPreconditions();
 
-        if (type != WorkerType.BUKKIT_TASK && type != WorkerType.SCHEDULED_TASK) {
+        if (type != WorkerType.BUKKIT_TASK && !isScheduledType()) {
             throw new IllegalArgumentException("setDelay is not implemented for " + type.name());
         }
 
@@ -170,13 +307,55 @@ public class TracerWorker implements Registrable, Listener, Runnable {
     public void setPeriod(long period) {
         checkPreconditions();
 
-        if (type != WorkerType.BUKKIT_TASK && type != WorkerType.SCHEDULED_TASK) {
+        if (type != WorkerType.BUKKIT_TASK && !isScheduledType()) {
             throw new IllegalArgumentException("setPeriod is not implemented for " + type.name());
         }
 
         this.period = period;
     }
 
+    /**
+     * Sets the time a single run is expected to complete within,
+     * runs exceeding it are counted and logged. A budget of 0
+     * uses the default: one tick for sync {@link WorkerType#BUKKIT_TASK}
+     * workers, otherwise the period.
+     *
+     * @param budget the budget in milliseconds
+     */
+    public void setBudget(long budget) {
+        checkPreconditions();
+
+        if (type != WorkerType.BUKKIT_TASK && !isScheduledType()) {
+            throw new IllegalArgumentException("setBudget is not implemented for " + type.name());
+        }
+
+        if (budget < 0) {
+            throw new IllegalArgumentException("budget cannot be negative");
+        }
+
+        this.budget = budget;
+    }
+
+    /**
+     * Enables the sync work queue, see {@link #queue(Runnable)}. This
+     * may be used with any worker type, including none, and on a worker
+     * which is already registered, which starts draining the queue.
+     *
+     * @param budget the time spent draining the queue per tick in milliseconds
+     */
+    public void setQueueBudget(long budget) {
+        if (queue != null && queue.getBudget() == budget) {
+            return;
+        }
+
+        if (queue != null && !queue.isEmpty()) {
+            throw new IllegalStateException("queue budget cannot be changed while work is queued");
+        }
+
+        queue = new SyncWorkQueue(budget);
+        startQueue();
+    }
+
     public void setSync(boolean sync) {
         checkPreconditions();
 
@@ -190,7 +369,7 @@ public class TracerWorker implements Registrable, Listener, Runnable {
     public void setThreadName(String threadName) {
         checkPreconditions();
 
-        if (type != WorkerType.THREAD) {
+        if (type != WorkerType.THREAD && type != WorkerType.VIRTUAL_THREAD) {
             throw new IllegalArgumentException("setThreadName is not implemented for " + type.name());
         }
 
@@ -200,13 +379,61 @@ public class TracerWorker implements Registrable, Listener, Runnable {
     public void setIsFixed(boolean fixed) {
         checkPreconditions();
 
-        if (type != WorkerType.SCHEDULED_TASK) {
+        if (!isScheduledType()) {
             throw new IllegalArgumentException("setIsFixed is not implemented for " + type.name());
         }
 
         this.fixed = fixed;
     }
 
+    public void setMaxConcurrency(int maxConcurrency) {
+        checkPreconditions();
+
+        if (!isScheduledType()) {
+            throw new IllegalArgumentException("setMaxConcurrency is not implemented for " + type.name());
+        }
+
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public void setIsolated(boolean isolated) {
+        checkPreconditions();
+
+        if (type != WorkerType.SCHEDULED_TASK) {
+            throw new IllegalArgumentException("setIsolated is not implemented for " + type.name());
+        }
+
+        this.isolated = isolated;
+    }
+
+    /**
+     * Returns the execution statistics of this worker's periodic
+     * runs, {@link WorkerType#THREAD} and {@link WorkerType#VIRTUAL_THREAD}
+     * workers are not measured.
+     *
+     * @return the worker's metrics
+     */
+    public WorkerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the scheduled task backing this worker, or null if it is
+     *         not a running {@link WorkerType#SCHEDULED_TASK} or
+     *         {@link WorkerType#VIRTUAL_SCHEDULED_TASK}.
+     */
+    public WorkerScheduler.Task getScheduledTask() {
+        return scheduled;
+    }
+
+    private boolean isScheduledType() {
+        return type == WorkerType.SCHEDULED_TASK || type == WorkerType.VIRTUAL_SCHEDULED_TASK;
+    }
+
     private void checkPreconditions() {
         if (type == null) {
             throw new IllegalStateException("setWorkerType must be called first");
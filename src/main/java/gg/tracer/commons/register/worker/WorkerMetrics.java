@@ -0,0 +1,177 @@
+package gg.tracer.commons.register.worker;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execution statistics of a {@link TracerWorker}'s periodic runs.
+ * <p>
+ * Durations are in nanoseconds, percentiles are calculated over
+ * the most recent {@link #SAMPLE_SIZE} runs.
+ *
+ * @author Bradley Steele
+ */
+public class WorkerMetrics {
+
+    public static final int SAMPLE_SIZE = 256;
+
+    private final long[] samples = new long[SAMPLE_SIZE];
+    private int sampleIndex;
+
+    private long count;
+    private long totalNanos;
+    private long lastNanos;
+    private long maxNanos;
+    private long tickNanos;
+    private long missedPeriods;
+    private long overruns;
+    private long lastStart;
+
+    /**
+     * Records a completed run.
+     *
+     * @param start         the {@link System#nanoTime()} at which the run started
+     * @param duration      the duration of the run in nanoseconds
+     * @param expected      the expected nanoseconds between run starts, or 0 if unknown
+     * @param tickThread    true if the run blocked the server thread
+     * @param budget        the budget in nanoseconds
+     * @return true if the run exceeded its budget
+     */
+    synchronized boolean record(long start, long duration, long expected, boolean tickThread, long budget) {
+        count++;
+        totalNanos += duration;
+        lastNanos = duration;
+        maxNanos = Math.max(maxNanos, duration);
+
+        samples[sampleIndex] = duration;
+        sampleIndex = (sampleIndex + 1) % SAMPLE_SIZE;
+
+        if (tickThread) {
+            tickNanos += duration;
+        }
+
+        if (expected > 0 && lastStart != 0 && start > lastStart) {
+            long missed = Math.round((double) (start - lastStart) / expected) - 1;
+
+            if (missed > 0) {
+                missedPeriods += missed;
+            }
+        }
+
+        lastStart = Math.max(lastStart, start);
+
+        if (duration > budget) {
+            overruns++;
+            return true;
+        }
+
+        return false;
+    }
+
+    synchronized void recordTick(long duration) {
+        tickNanos += duration;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(samples, 0);
+        sampleIndex = 0;
+        count = 0;
+        totalNanos = 0;
+        lastNanos = 0;
+        maxNanos = 0;
+        tickNanos = 0;
+        missedPeriods = 0;
+        overruns = 0;
+        lastStart = 0;
+    }
+
+    /**
+     * @return the number of completed runs.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getLastNanos() {
+        return lastNanos;
+    }
+
+    public synchronized long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public synchronized long getAverageNanos() {
+        return count > 0 ? totalNanos / count : 0;
+    }
+
+    /**
+     * Returns the duration that the given fraction of recent
+     * runs completed within.
+     *
+     * @param percentile the percentile between 0 and 1, e.g. 0.99
+     * @return the percentile duration in nanoseconds
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] sorted;
+
+        synchronized (this) {
+            int size = (int) Math.min(count, SAMPLE_SIZE);
+
+            if (size == 0) {
+                return 0;
+            }
+
+            sorted = Arrays.copyOf(samples, size);
+        }
+
+        Arrays.sort(sorted);
+
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    public long getP99Nanos() {
+        return getPercentileNanos(0.99);
+    }
+
+    /**
+     * @return the total time spent blocking the server thread.
+     */
+    public synchronized long getTickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * @return the number of periods in which a fixed-rate run should
+     *         have started but did not.
+     */
+    public synchronized long getMissedPeriods() {
+        return missedPeriods;
+    }
+
+    /**
+     * @return the number of runs that exceeded the worker's budget.
+     */
+    public synchronized long getOverruns() {
+        return overruns;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "WorkerMetrics{count=%s, last=%.2fms, avg=%.2fms, p99=%.2fms, max=%.2fms, tick=%sms, missed=%s, overruns=%s}",
+                getCount(),
+                toMillis(getLastNanos()),
+                toMillis(getAverageNanos()),
+                toMillis(getP99Nanos()),
+                toMillis(getMaxNanos()),
+                TimeUnit.NANOSECONDS.toMillis(getTickNanos()),
+                getMissedPeriods(),
+                getOverruns()
+        );
+    }
+
+    static double toMillis(long nanos) {
+        return nanos / 1_000_000D;
+    }
+}
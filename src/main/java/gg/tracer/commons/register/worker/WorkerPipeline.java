@@ -0,0 +1,150 @@
+package gg.tracer.commons.register.worker;
+
+import org.bukkit.Bukkit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Hands results from async producers (e.g. {@link WorkerType#THREAD} or
+ * {@link WorkerType#SCHEDULED_TASK} workers) to a single consumer on
+ * the server thread.
+ * <p>
+ * Results are buffered in a bounded queue and consumed in batches
+ * once per tick, rather than scheduling a task per result. When the
+ * consumer falls behind and the queue fills up, producers are pushed
+ * back: {@link #offer(Object)} fails and {@link #put(Object)} blocks.
+ * <p>
+ * The consumer is given batches of at most the batch size. A pipeline
+ * is a worker and must be registered like one. Results
+ * still queued when it is unregistered are consumed once it is
+ * registered again.
+ *
+ * @param <T> the result type
+ * @author Bradley Steele
+ */
+public class WorkerPipeline<T> extends TracerWorker {
+
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final BlockingQueue<T> queue;
+    private final int capacity;
+    private final int batchSize;
+    private final Consumer<List<T>> consumer;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public WorkerPipeline(int capacity, int batchSize, Consumer<List<T>> consumer) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.consumer = Objects.requireNonNull(consumer, "consumer");
+
+        setWorkerType(WorkerType.BUKKIT_TASK);
+        setSync(true);
+        setPeriod(1);
+    }
+
+    public WorkerPipeline(Consumer<List<T>> consumer) {
+        this(DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, consumer);
+    }
+
+    @Override
+    public final void run() {
+        if (queue.isEmpty()) {
+            return;
+        }
+
+        List<T> batch = new ArrayList<>(Math.min(queue.size(), batchSize));
+        queue.drainTo(batch, batchSize);
+
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
+    }
+
+    /**
+     * Offers a result without blocking.
+     *
+     * @param result the result
+     * @return false if the pipeline is full and the result was rejected
+     */
+    public boolean offer(T result) {
+        if (queue.offer(result)) {
+            return true;
+        }
+
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Offers a result, waiting up to the timeout for space.
+     *
+     * @param result  the result
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the timeout
+     * @return false if the pipeline stayed full and the result was rejected
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean offer(T result, long timeout, TimeUnit unit) throws InterruptedException {
+        if (queue.offer(result, timeout, unit)) {
+            return true;
+        }
+
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Queues a result, blocking until there is space. This must not
+     * be called on the server thread as the consumer runs there.
+     *
+     * @param result the result
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void put(T result) throws InterruptedException {
+        if (Bukkit.isPrimaryThread()) {
+            throw new IllegalStateException("put cannot block the server thread, use offer instead");
+        }
+
+        queue.put(result);
+    }
+
+    /**
+     * @return the number of results waiting to be consumed.
+     */
+    public int getBacklog() {
+        return queue.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the number of results rejected because the pipeline was full.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+}
@@ -0,0 +1,378 @@
+package gg.tracer.commons.register.worker;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import gg.tracer.commons.plugin.TracerPlugin;
+import gg.tracer.commons.util.VirtualThreads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Schedules {@link WorkerType#SCHEDULED_TASK} workers for a single
+ * {@link TracerPlugin}.
+ * <p>
+ * A single timer thread only decides when a worker is due, the
+ * run itself is handed to a work-stealing pool sized to the
+ * available cores. A worker may instead be given its own lane
+ * so that it never competes with the shared pool, or run each
+ * time on a fresh virtual thread.
+ *
+ * @author Bradley Steele
+ */
+public class WorkerScheduler {
+
+    public static final int DEFAULT_PARALLELISM = Math.max(2, Runtime.getRuntime().availableProcessors());
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT = 5000;
+
+    private final TracerPlugin plugin;
+    private final String name;
+    private final int parallelism;
+
+    private final ScheduledThreadPoolExecutor timer;
+    private final ForkJoinPool pool;
+    private final Set<Task> tasks = ConcurrentHashMap.newKeySet();
+    // kept after their task is cancelled until they terminate, so shutdown awaits them
+    private final Set<ExecutorService> lanes = ConcurrentHashMap.newKeySet();
+
+    private ExecutorService virtual;
+    private volatile boolean shutdown = false;
+
+    public WorkerScheduler(TracerPlugin plugin, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+
+        this.plugin = plugin;
+        this.name = plugin.getName();
+        this.parallelism = parallelism;
+
+        timer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setNameFormat(name.replace("%", "%%") + "-worker-timer")
+                .setDaemon(true)
+                .build());
+        timer.setRemoveOnCancelPolicy(true);
+
+        pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName(name + "-worker-" + thread.getPoolIndex());
+            return thread;
+        }, null, true);
+    }
+
+    public WorkerScheduler(TracerPlugin plugin) {
+        this(plugin, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Schedules a periodic task.
+     *
+     * @param taskName       the name used in thread names and logs
+     * @param runnable       the task to run
+     * @param delay          the initial delay in milliseconds
+     * @param period         the period in milliseconds
+     * @param fixed          true for a fixed rate, false for a fixed delay between runs
+     * @param maxConcurrency the maximum number of runs in flight at once (fixed rate only)
+     * @param lane           where each run executes
+     * @return the scheduled task
+     */
+    public Task schedule(String taskName, Runnable runnable, long delay, long period, boolean fixed, int maxConcurrency, Lane lane) {
+        if (shutdown) {
+            throw new IllegalStateException("worker scheduler has been shut down");
+        }
+
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be greater than 0");
+        }
+
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+
+        // a fixed delay is measured from the end of the previous run
+        if (!fixed) {
+            maxConcurrency = 1;
+        }
+
+        ExecutorService executor;
+
+        if (lane == Lane.ISOLATED) {
+            lanes.removeIf(ExecutorService::isTerminated);
+
+            executor = Executors.newFixedThreadPool(maxConcurrency, new ThreadFactoryBuilder()
+                    .setNameFormat(name.replace("%", "%%") + "-lane-" + taskName.replace("%", "%%") + "-%d")
+                    .setDaemon(true)
+                    .build());
+            lanes.add(executor);
+        } else if (lane == Lane.VIRTUAL) {
+            executor = getVirtualExecutor();
+        } else {
+            executor = pool;
+        }
+
+        Task task = new Task(taskName, runnable, period, fixed, maxConcurrency, lane, executor);
+        tasks.add(task);
+
+        if (fixed) {
+            task.trigger = timer.scheduleAtFixedRate(task::dispatch, delay, period, TimeUnit.MILLISECONDS);
+        } else {
+            task.trigger = timer.schedule(task::dispatch, delay, TimeUnit.MILLISECONDS);
+        }
+
+        return task;
+    }
+
+    public Task schedule(String taskName, Runnable runnable, long delay, long period, boolean fixed, int maxConcurrency, boolean isolated) {
+        return schedule(taskName, runnable, delay, period, fixed, maxConcurrency, isolated ? Lane.ISOLATED : Lane.SHARED);
+    }
+
+    /**
+     * Cancels every task and waits for in-flight runs to finish on every
+     * lane, interrupting those still running after the timeout.
+     *
+     * @param timeout the maximum time to wait in milliseconds
+     */
+    public void shutdown(long timeout) {
+        if (shutdown) {
+            return;
+        }
+
+        shutdown = true;
+
+        for (Task task : tasks) {
+            task.cancel(task.lane == Lane.VIRTUAL);
+        }
+
+        timer.shutdownNow();
+
+        List<ExecutorService> executors = new ArrayList<>(lanes);
+        executors.add(pool);
+
+        synchronized (this) {
+            if (virtual != null) {
+                executors.add(virtual);
+            }
+        }
+
+        for (ExecutorService executor : executors) {
+            executor.shutdown();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        List<ExecutorService> running = new ArrayList<>();
+
+        try {
+            for (ExecutorService executor : executors) {
+                if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    running.add(executor);
+                }
+            }
+        } catch (InterruptedException e) {
+            running = executors;
+            Thread.currentThread().interrupt();
+        }
+
+        if (!running.isEmpty()) {
+            plugin.logger.warn("Worker scheduler did not terminate within &e%s&rms: interrupting remaining workers", timeout);
+
+            for (ExecutorService executor : running) {
+                executor.shutdownNow();
+            }
+        }
+
+        lanes.clear();
+    }
+
+    public void shutdown() {
+        shutdown(DEFAULT_SHUTDOWN_TIMEOUT);
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return the shared pool that scheduled tasks run on.
+     */
+    public ExecutorService getExecutor() {
+        return pool;
+    }
+
+    public Set<Task> getTasks() {
+        return tasks;
+    }
+
+    private synchronized ExecutorService getVirtualExecutor() {
+        if (virtual == null) {
+            virtual = VirtualThreads.newThreadPerTaskExecutor(name + "-virtual-");
+        }
+
+        return virtual;
+    }
+
+    public enum Lane {
+
+        /**
+         * Runs on the shared work-stealing pool.
+         */
+        SHARED,
+
+        /**
+         * Runs on a pool dedicated to the task.
+         */
+        ISOLATED,
+
+        /**
+         * Runs each time on a new virtual thread.
+         */
+        VIRTUAL
+
+        ;
+    }
+
+    public final class Task {
+
+        private final String name;
+        private final Runnable runnable;
+        private final long period;
+        private final boolean fixed;
+        private final int maxConcurrency;
+        private final Lane lane;
+        private final ExecutorService executor;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong skipped = new AtomicLong();
+        private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        private volatile ScheduledFuture<?> trigger;
+        private volatile boolean cancelled = false;
+
+        private Task(String name, Runnable runnable, long period, boolean fixed, int maxConcurrency, Lane lane, ExecutorService executor) {
+            this.name = name;
+            this.runnable = runnable;
+            this.period = period;
+            this.fixed = fixed;
+            this.maxConcurrency = maxConcurrency;
+            this.lane = lane;
+            this.executor = executor;
+        }
+
+        // timer thread
+        private void dispatch() {
+            if (cancelled) {
+                return;
+            }
+
+            if (inFlight.incrementAndGet() > maxConcurrency) {
+                inFlight.decrementAndGet();
+                skipped.incrementAndGet();
+                return;
+            }
+
+            try {
+                executor.execute(this::execute);
+            } catch (RejectedExecutionException e) {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        private void execute() {
+            Thread thread = Thread.currentThread();
+            threads.add(thread);
+
+            try {
+                runnable.run();
+            } catch (Throwable t) {
+                if (!cancelled) {
+                    plugin.logger.error("A Throwable was caught while running worker &c%s&r:", name);
+                    plugin.logger.exception(t);
+                }
+            } finally {
+                threads.remove(thread);
+                inFlight.decrementAndGet();
+
+                // clear an interrupt aimed at this run before the thread is reused
+                if (lane != Lane.VIRTUAL) {
+                    Thread.interrupted();
+                }
+
+                if (!fixed && !cancelled) {
+                    try {
+                        trigger = timer.schedule(this::dispatch, period, TimeUnit.MILLISECONDS);
+                    } catch (RejectedExecutionException e) {
+                        // scheduler is shutting down
+                    }
+                }
+            }
+        }
+
+        /**
+         * Cancels the task, runs already in flight are left to finish
+         * unless {@code interrupt} is true.
+         *
+         * @param interrupt true to interrupt the threads of in-flight runs
+         */
+        public void cancel(boolean interrupt) {
+            cancelled = true;
+
+            ScheduledFuture<?> trigger = this.trigger;
+
+            if (trigger != null) {
+                trigger.cancel(false);
+            }
+
+            if (interrupt) {
+                for (Thread thread : threads) {
+                    thread.interrupt();
+                }
+            }
+
+            if (lane == Lane.ISOLATED) {
+                executor.shutdown();
+            }
+
+            tasks.remove(this);
+        }
+
+        public void cancel() {
+            cancel(false);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Lane getLane() {
+            return lane;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        /**
+         * @return the number of runs currently executing.
+         */
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        /**
+         * @return the number of runs skipped because {@link #getMaxConcurrency()} was reached.
+         */
+        public long getSkipped() {
+            return skipped.get();
+        }
+    }
+}
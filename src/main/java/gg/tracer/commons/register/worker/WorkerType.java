@@ -7,7 +7,9 @@ public enum WorkerType {
 
     BUKKIT_TASK,
     THREAD,
-    SCHEDULED_TASK
+    SCHEDULED_TASK,
+    VIRTUAL_THREAD,
+    VIRTUAL_SCHEDULED_TASK
 
     ;
 }
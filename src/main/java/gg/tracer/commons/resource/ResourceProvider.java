@@ -3,11 +3,16 @@ package gg.tracer.commons.resource;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import gg.tracer.commons.logging.StaticLog;
+import gg.tracer.commons.plugin.StartupProfiler;
 import gg.tracer.commons.plugin.TracerPlugin;
+import gg.tracer.commons.register.Registrable;
 
 import java.io.*;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Bradley Steele
@@ -16,15 +21,21 @@ public class ResourceProvider {
 
     private final TracerPlugin plugin;
 
-    private final Map<String, Resource> cached = new HashMap<>();
+    private final Map<String, Resource> cached = new ConcurrentHashMap<>();
+    private final Map<String, Long> cachedModified = new ConcurrentHashMap<>();
     private final Map<String, ResourceHandler<?>> handlers = new HashMap<>();
 
+    // the resources used by each registrable and their last modified times
+    private final Map<Registrable, Map<File, Long>> tracked = new ConcurrentHashMap<>();
+    private final ThreadLocal<Registrable> tracking = new ThreadLocal<>();
+
     public ResourceProvider(TracerPlugin plugin) {
         this.plugin = plugin;
     }
 
     public Resource loadResource(ResourceReference from, ResourceReference to) {
         long start = System.currentTimeMillis();
+        long profileStart = plugin.getStartupProfiler().start();
 
         try {
             Files.createParentDirs(to.file);
@@ -46,8 +57,17 @@ public class ResourceProvider {
             return null;
         }
 
+        // read before loading so an edit made during the load is still seen as a change
+        long modified = to.file.lastModified();
         Resource resource = handler.load(this, to);
-        cached.put(to.path, resource);
+
+        if (resource != null) {
+            cachedModified.put(to.path, modified);
+            cached.put(to.path, resource);
+            track(to.file, modified);
+        }
+
+        plugin.getStartupProfiler().record(StartupProfiler.RESOURCE, to.path, profileStart);
 
         return resource;
     }
@@ -83,8 +103,13 @@ public class ResourceProvider {
     }
 
     public Resource getResource(ResourceReference reference, boolean fromCache) {
-        if (fromCache && cached.containsKey(reference.path)) {
-            return cached.get(reference.path);
+        Resource resource = fromCache ? cached.get(reference.path) : null;
+
+        if (resource != null) {
+            // the time the cached contents were loaded, not the file's current time
+            Long modified = cachedModified.get(reference.path);
+            track(resource.getReference().file, modified != null ? modified : 0L);
+            return resource;
         }
 
         return loadResource(reference);
@@ -94,6 +119,94 @@ public class ResourceProvider {
         return getResource(reference, true);
     }
 
+    /**
+     * Runs an action, attributing any resources it loads to the
+     * registrable so that {@link #hasChanged(Registrable)} can tell
+     * when they are modified.
+     *
+     * @param registrable the registrable
+     * @param action      the action, e.g. registering the registrable
+     */
+    public void track(Registrable registrable, Runnable action) {
+        Registrable previous = tracking.get();
+        tracking.set(registrable);
+
+        try {
+            action.run();
+        } finally {
+            if (previous != null) {
+                tracking.set(previous);
+            } else {
+                tracking.remove();
+            }
+        }
+    }
+
+    /**
+     * @return true if a resource used by the registrable has been modified since it was loaded.
+     */
+    public boolean hasChanged(Registrable registrable) {
+        Map<File, Long> files = tracked.get(registrable);
+
+        if (files == null) {
+            return false;
+        }
+
+        for (Map.Entry<File, Long> entry : files.entrySet()) {
+            if (entry.getKey().lastModified() != entry.getValue()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the files of the resources used by the registrable.
+     */
+    public Set<File> getTrackedFiles(Registrable registrable) {
+        Map<File, Long> files = tracked.get(registrable);
+        return files != null ? Collections.unmodifiableSet(files.keySet()) : Collections.emptySet();
+    }
+
+    /**
+     * Stops tracking the registrable's resources and drops any that
+     * have been modified from the cache, so they are loaded from disk
+     * when it next asks for them.
+     */
+    public void forget(Registrable registrable) {
+        Map<File, Long> files = tracked.remove(registrable);
+
+        if (files == null) {
+            return;
+        }
+
+        for (Map.Entry<File, Long> entry : files.entrySet()) {
+            File file = entry.getKey();
+
+            if (file.lastModified() != entry.getValue()) {
+                cached.entrySet().removeIf(cache -> {
+                    if (!cache.getValue().getReference().file.getAbsoluteFile().equals(file)) {
+                        return false;
+                    }
+
+                    cachedModified.remove(cache.getKey());
+                    return true;
+                });
+            }
+        }
+    }
+
+    private void track(File file, long modified) {
+        Registrable registrable = tracking.get();
+
+        if (registrable == null) {
+            return;
+        }
+
+        tracked.computeIfAbsent(registrable, r -> new ConcurrentHashMap<>()).put(file.getAbsoluteFile(), modified);
+    }
+
     private ResourceHandler<?> getResourceHandler(String extension) {
         extension = extension.toLowerCase();
 
@@ -0,0 +1,322 @@
+package gg.tracer.commons.util;
+
+import gg.tracer.commons.logging.StaticLog;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Finds the classes of a type within a package without loading every
+ * class in it.
+ * <p>
+ * Jars are read through their central directory and directories are
+ * walked recursively, including subpackages. Only the header of each
+ * class file is parsed, its name, superclass and interfaces, so the
+ * type hierarchy can be checked before anything is loaded. Classes
+ * outside of the scanned entries, such as a library's base class, are
+ * loaded without being initialized to finish the check. Matching
+ * classes are loaded without being initialized.
+ * <p>
+ * Classpath entries are scanned in parallel, the headers read from a
+ * jar are cached until the jar is modified.
+ *
+ * @author Bradley Steele
+ */
+public final class ClassScanner {
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private static final Map<String, CachedJar> JARS = new ConcurrentHashMap<>();
+
+    private ClassScanner() {}
+
+    /**
+     * Returns the classes within a package, or its subpackages, that
+     * are assignable to a type.
+     *
+     * @param paths       the jars and directories to search
+     * @param packageName the package, or an empty string for all packages
+     * @param type        the type of classes
+     * @param loader      the class loader to load classes with
+     * @return the classes
+     */
+    public static <T> Set<Class<? extends T>> findClasses(Collection<String> paths, String packageName, Class<T> type, ClassLoader loader) {
+        String prefix = packageName.isEmpty() ? "" : packageName.replace('.', '/') + '/';
+
+        Map<String, ClassHeader> headers = paths.parallelStream()
+                .distinct()
+                .flatMap(path -> scan(path, prefix).stream())
+                .collect(Collectors.toMap(header -> header.name, header -> header, (first, second) -> first));
+
+        String target = type.getName();
+        Map<String, Boolean> memo = new HashMap<>();
+        Set<Class<? extends T>> classes = new HashSet<>();
+
+        for (ClassHeader header : headers.values()) {
+            if (header.isSynthetic() || !isSubtype(header.name, target, type, headers, loader, memo)) {
+                continue;
+            }
+
+            Class<? extends T> clazz = load(header.name, type, loader);
+
+            if (clazz != null) {
+                classes.add(clazz);
+            }
+        }
+
+        return classes;
+    }
+
+    /**
+     * Clears the cached class headers of all jars.
+     */
+    public static void clearCache() {
+        JARS.clear();
+    }
+
+    private static List<ClassHeader> scan(String path, String prefix) {
+        File file = new File(path);
+
+        try {
+            if (file.isDirectory()) {
+                return scanDirectory(file.toPath(), prefix);
+            }
+
+            if (file.isFile() && path.endsWith(CLASS_SUFFIX)) {
+                return List.of(ClassHeader.read(Files.readAllBytes(file.toPath())));
+            }
+
+            if (file.isFile()) {
+                return scanJar(file, prefix);
+            }
+        } catch (IOException | RuntimeException e) {
+            StaticLog.exception(e);
+        }
+
+        return Collections.emptyList();
+    }
+
+    private static List<ClassHeader> scanJar(File file, String prefix) throws IOException {
+        String key = file.getAbsolutePath();
+        long modified = file.lastModified();
+        long length = file.length();
+
+        CachedJar cached = JARS.get(key);
+
+        if (cached == null || cached.modified != modified || cached.length != length) {
+            cached = new CachedJar(modified, length);
+            JARS.put(key, cached);
+        }
+
+        List<ClassHeader> headers = cached.packages.get(prefix);
+
+        if (headers != null) {
+            return headers;
+        }
+
+        headers = new ArrayList<>();
+
+        try (ZipFile zip = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+
+                if (entry.isDirectory() || !name.startsWith(prefix) || !isClassFile(name)) {
+                    continue;
+                }
+
+                try (InputStream stream = zip.getInputStream(entry)) {
+                    headers.add(ClassHeader.read(stream.readAllBytes()));
+                } catch (IOException | RuntimeException e) {
+                    // not a readable class file
+                }
+            }
+        }
+
+        headers = Collections.unmodifiableList(headers);
+        cached.packages.put(prefix, headers);
+
+        return headers;
+    }
+
+    private static List<ClassHeader> scanDirectory(Path root, String prefix) throws IOException {
+        Path base = prefix.isEmpty() ? root : root.resolve(prefix);
+
+        if (!Files.isDirectory(base)) {
+            return Collections.emptyList();
+        }
+
+        List<ClassHeader> headers = new ArrayList<>();
+
+        try (Stream<Path> files = Files.walk(base)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!isClassFile(file.getFileName().toString()) || !Files.isRegularFile(file)) {
+                    continue;
+                }
+
+                try {
+                    headers.add(ClassHeader.read(Files.readAllBytes(file)));
+                } catch (IOException | RuntimeException e) {
+                    // not a readable class file
+                }
+            }
+        }
+
+        return headers;
+    }
+
+    private static boolean isClassFile(String name) {
+        return name.endsWith(CLASS_SUFFIX)
+                && !name.endsWith("module-info.class")
+                && !name.endsWith("package-info.class")
+                && !name.startsWith("META-INF/");
+    }
+
+    private static boolean isSubtype(String name, String target, Class<?> type, Map<String, ClassHeader> headers, ClassLoader loader, Map<String, Boolean> memo) {
+        if (name.equals(target)) {
+            return true;
+        }
+
+        Boolean known = memo.get(name);
+
+        if (known != null) {
+            return known;
+        }
+
+        boolean result;
+        ClassHeader header = headers.get(name);
+
+        if (header != null) {
+            // guard against cycles in malformed input
+            memo.put(name, false);
+            result = header.superName != null && isSubtype(header.superName, target, type, headers, loader, memo);
+
+            for (int i = 0; !result && i < header.interfaces.length; i++) {
+                result = isSubtype(header.interfaces[i], target, type, headers, loader, memo);
+            }
+        } else {
+            // outside of the scanned classes, e.g. a library or jdk class
+            Class<?> clazz = loadClass(name, loader);
+            result = clazz != null && type.isAssignableFrom(clazz);
+        }
+
+        memo.put(name, result);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Class<? extends T> load(String name, Class<T> type, ClassLoader loader) {
+        Class<?> clazz = loadClass(name, loader);
+        return clazz != null && type.isAssignableFrom(clazz) ? (Class<? extends T>) clazz : null;
+    }
+
+    private static Class<?> loadClass(String name, ClassLoader loader) {
+        try {
+            return Class.forName(name, false, loader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static final class CachedJar {
+
+        private final long modified;
+        private final long length;
+        private final Map<String, List<ClassHeader>> packages = new ConcurrentHashMap<>();
+
+        private CachedJar(long modified, long length) {
+            this.modified = modified;
+            this.length = length;
+        }
+    }
+
+    /**
+     * The name, superclass and interfaces of a class file, read from
+     * its header without parsing the rest of the class.
+     */
+    private static final class ClassHeader {
+
+        private static final int MAGIC = 0xCAFEBABE;
+        private static final int ACC_SYNTHETIC = 0x1000;
+        private static final int ACC_MODULE = 0x8000;
+
+        private final String name;
+        private final String superName;
+        private final String[] interfaces;
+        private final int access;
+
+        private ClassHeader(String name, String superName, String[] interfaces, int access) {
+            this.name = name;
+            this.superName = superName;
+            this.interfaces = interfaces;
+            this.access = access;
+        }
+
+        private boolean isSynthetic() {
+            return (access & (ACC_SYNTHETIC | ACC_MODULE)) != 0;
+        }
+
+        private static ClassHeader read(byte[] bytes) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a class file");
+            }
+
+            in.skipBytes(4); // minor and major version
+
+            int count = in.readUnsignedShort();
+            int[] offsets = new int[count];  // of utf8 entries
+            int[] classes = new int[count];  // class entry -> utf8 index
+
+            for (int i = 1; i < count; i++) {
+                int tag = in.readUnsignedByte();
+
+                switch (tag) {
+                    case 1 -> { // utf8
+                        offsets[i] = bytes.length - in.available();
+                        in.skipBytes(in.readUnsignedShort());
+                    }
+                    case 7 -> classes[i] = in.readUnsignedShort(); // class
+                    case 8, 16, 19, 20 -> in.skipBytes(2); // string, method type, module, package
+                    case 15 -> in.skipBytes(3); // method handle
+                    case 3, 4, 9, 10, 11, 12, 17, 18 -> in.skipBytes(4);
+                    case 5, 6 -> { // long, double take two entries
+                        in.skipBytes(8);
+                        i++;
+                    }
+                    default -> throw new IOException("unknown constant pool tag " + tag);
+                }
+            }
+
+            int access = in.readUnsignedShort();
+            String name = className(bytes, offsets, classes, in.readUnsignedShort());
+            int superIndex = in.readUnsignedShort();
+            String superName = superIndex != 0 ? className(bytes, offsets, classes, superIndex) : null;
+            String[] interfaces = new String[in.readUnsignedShort()];
+
+            for (int i = 0; i < interfaces.length; i++) {
+                interfaces[i] = className(bytes, offsets, classes, in.readUnsignedShort());
+            }
+
+            return new ClassHeader(name, superName, interfaces, access);
+        }
+
+        private static String className(byte[] bytes, int[] offsets, int[] classes, int index) throws IOException {
+            int offset = offsets[classes[index]];
+
+            // the length prefixed modified utf-8 readUTF expects
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset, bytes.length - offset));
+            return in.readUTF().replace('/', '.');
+        }
+    }
+}
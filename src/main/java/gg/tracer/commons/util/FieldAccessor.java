@@ -0,0 +1,103 @@
+package gg.tracer.commons.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * A field resolved once to getter and setter {@link MethodHandle}s.
+ * Obtained from {@link Reflection#getFieldAccessor(Class, String)},
+ * which caches accessors by class and name.
+ * <p>
+ * Like {@link Reflection}, an accessor is safe: failures are ignored
+ * and reads return null. The handles are inlined by the JIT when the
+ * accessor is held in a {@code static final} field.
+ *
+ * @param <T> the type of the field's value
+ * @author Bradley Steele
+ */
+public final class FieldAccessor<T> {
+
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Field field;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+
+    FieldAccessor(Field field) throws IllegalAccessException {
+        this.field = field;
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle getter = lookup.unreflectGetter(field);
+        MethodHandle setter = null;
+
+        boolean isStatic = Modifier.isStatic(field.getModifiers());
+
+        // static finals cannot be set through a handle, even when accessible,
+        // nor can the finals of records and hidden classes, which are still read
+        if (!isStatic || !Modifier.isFinal(field.getModifiers())) {
+            try {
+                setter = lookup.unreflectSetter(field);
+            } catch (IllegalAccessException e) {
+                // read-only
+            }
+        }
+
+        if (isStatic) {
+            // take and ignore a target so every accessor has the same shape
+            getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            setter = setter != null ? MethodHandles.dropArguments(setter, 0, Object.class) : null;
+        }
+
+        this.getter = getter.asType(GETTER);
+        this.setter = setter != null ? setter.asType(SETTER) : null;
+    }
+
+    /**
+     * @param target the object to read from, ignored for static fields
+     * @return the value, or null if it could not be read
+     */
+    @SuppressWarnings("unchecked")
+    public T get(Object target) {
+        try {
+            return (T) (Object) getter.invokeExact(target);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    public T get(Object target, T fallback) {
+        T value = get(target);
+        return value != null ? value : fallback;
+    }
+
+    /**
+     * @param target the object to write to, ignored for static fields
+     * @param value  the value
+     * @return false if the value could not be written
+     */
+    public boolean set(Object target, T value) {
+        if (setter == null) {
+            return false;
+        }
+
+        try {
+            setter.invokeExact(target, (Object) value);
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    @Override
+    public String toString() {
+        return "FieldAccessor{" + field.getDeclaringClass().getName() + '.' + field.getName() + '}';
+    }
+}
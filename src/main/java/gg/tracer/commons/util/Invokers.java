@@ -0,0 +1,221 @@
+package gg.tracer.commons.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * Defines the invokers of {@link Reflection#createInvoker(Class, Method)}.
+ * <p>
+ * An invoker is a hidden class beside this one implementing the functional
+ * interface, its method calls {@code invokeExact} on the target's handle,
+ * which it loads as a constant from its class data. The handle was resolved
+ * with the member's accessibility suppressed, so private members of any
+ * class loader are reached, and being constant the JIT inlines the call.
+ *
+ * @author Bradley Steele
+ */
+final class Invokers {
+
+    private static final String NAME = "gg/tracer/commons/util/Invoker";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String METHOD_HANDLE = "java/lang/invoke/MethodHandle";
+    private static final String CLASS_DATA_DESCRIPTOR = "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;";
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+    private static final int ACC_SYNTHETIC = 0x1000;
+    private static final int REF_INVOKE_STATIC = 6;
+
+    private Invokers() {}
+
+    /**
+     * @param interfaceType the functional interface, visible to this class' loader
+     * @param sam           the interface's single abstract method
+     * @param handle        the target, adapted to the method's type
+     * @return the invoker
+     * @throws Throwable if the handle cannot be adapted or the class cannot be defined
+     */
+    static <I> I create(Class<I> interfaceType, Method sam, MethodHandle handle) throws Throwable {
+        MethodType samType = MethodType.methodType(sam.getReturnType(), sam.getParameterTypes());
+        MethodHandle target = handle.asFixedArity().asType(samType);
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup()
+                .defineHiddenClassWithClassData(write(interfaceType, sam.getName(), samType), target, true);
+
+        return interfaceType.cast(lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke());
+    }
+
+    private static byte[] write(Class<?> interfaceType, String name, MethodType samType) throws IOException {
+        ConstantPool pool = new ConstantPool();
+
+        int thisClass = pool.classRef(NAME);
+        int superClass = pool.classRef(OBJECT);
+        int interfaceClass = pool.classRef(interfaceType.getName().replace('.', '/'));
+        int code = pool.utf8("Code");
+        int bootstrapMethods = pool.utf8("BootstrapMethods");
+
+        // <init>
+        int initName = pool.utf8("<init>");
+        int initDescriptor = pool.utf8("()V");
+        int superInit = pool.methodRef(OBJECT, "<init>", "()V");
+
+        // the single abstract method
+        String descriptor = samType.toMethodDescriptorString();
+        int samName = pool.utf8(name);
+        int samDescriptor = pool.utf8(descriptor);
+        int classData = pool.methodHandle(REF_INVOKE_STATIC, pool.methodRef("java/lang/invoke/MethodHandles", "classData", CLASS_DATA_DESCRIPTOR));
+        int target = pool.dynamic(0, "_", "L" + METHOD_HANDLE + ";");
+        int invokeExact = pool.methodRef(METHOD_HANDLE, "invokeExact", descriptor);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(61); // java 17
+        pool.writeTo(out);
+        out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(interfaceClass);
+        out.writeShort(0); // fields
+        out.writeShort(2); // methods
+
+        // aload_0, invokespecial Object.<init>, return
+        writeMethod(out, initName, initDescriptor, code, 1, 1, new byte[] {
+                0x2A, (byte) 0xB7, (byte) (superInit >> 8), (byte) superInit, (byte) 0xB1
+        });
+
+        // ldc_w handle, load each argument, invokevirtual invokeExact, return
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(0x13);
+        body.write(target >> 8);
+        body.write(target);
+
+        int slot = 1;
+
+        for (Class<?> parameter : samType.parameterArray()) {
+            body.write(opcode(parameter, 0x15, 0x16, 0x17, 0x18, 0x19));
+            body.write(slot);
+            slot += slots(parameter);
+        }
+
+        body.write(0xB6);
+        body.write(invokeExact >> 8);
+        body.write(invokeExact);
+        body.write(samType.returnType() == void.class ? 0xB1 : opcode(samType.returnType(), 0xAC, 0xAD, 0xAE, 0xAF, 0xB0));
+
+        writeMethod(out, samName, samDescriptor, code, Math.max(slot, slots(samType.returnType())), slot, body.toByteArray());
+
+        // the handle's bootstrap, MethodHandles.classData without arguments
+        out.writeShort(1);
+        out.writeShort(bootstrapMethods);
+        out.writeInt(6);
+        out.writeShort(1);
+        out.writeShort(classData);
+        out.writeShort(0);
+
+        return bytes.toByteArray();
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int code, int maxStack, int maxLocals, byte[] instructions) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(code);
+        out.writeInt(12 + instructions.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(instructions.length);
+        out.write(instructions);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    private static int opcode(Class<?> type, int intOpcode, int longOpcode, int floatOpcode, int doubleOpcode, int referenceOpcode) {
+        if (!type.isPrimitive()) {
+            return referenceOpcode;
+        }
+
+        if (type == long.class) {
+            return longOpcode;
+        }
+
+        if (type == float.class) {
+            return floatOpcode;
+        }
+
+        return type == double.class ? doubleOpcode : intOpcode;
+    }
+
+    private static int slots(Class<?> type) {
+        return type == void.class ? 0 : type == long.class || type == double.class ? 2 : 1;
+    }
+
+    // entries are not shared, duplicates are legal and the classes are tiny
+    private static final class ConstantPool {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private int count = 1;
+
+        private int utf8(String value) throws IOException {
+            out.writeByte(1);
+            out.writeUTF(value);
+            return count++;
+        }
+
+        private int classRef(String name) throws IOException {
+            int index = utf8(name);
+            out.writeByte(7);
+            out.writeShort(index);
+            return count++;
+        }
+
+        private int nameAndType(String name, String descriptor) throws IOException {
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            return count++;
+        }
+
+        private int methodRef(String owner, String name, String descriptor) throws IOException {
+            int ownerIndex = classRef(owner);
+            int nameAndType = nameAndType(name, descriptor);
+            out.writeByte(10);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+            return count++;
+        }
+
+        private int methodHandle(int kind, int reference) throws IOException {
+            out.writeByte(15);
+            out.writeByte(kind);
+            out.writeShort(reference);
+            return count++;
+        }
+
+        private int dynamic(int bootstrap, String name, String descriptor) throws IOException {
+            int nameAndType = nameAndType(name, descriptor);
+            out.writeByte(17);
+            out.writeShort(bootstrap);
+            out.writeShort(nameAndType);
+            return count++;
+        }
+
+        private void writeTo(DataOutputStream target) throws IOException {
+            target.writeShort(count);
+            bytes.writeTo(target);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package gg.tracer.commons.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * A method resolved once to a {@link MethodHandle}. Obtained from
+ * {@link Reflection#getMethodAccessor(Class, String, Class[])}, which
+ * caches accessors by class, name and parameter types.
+ * <p>
+ * Like {@link Reflection}, an accessor is safe: if the method cannot be
+ * invoked or throws, null is returned. The handle is inlined by the JIT
+ * when the accessor is held in a {@code static final} field.
+ *
+ * @param <T> the method's return type
+ * @author Bradley Steele
+ */
+public final class MethodAccessor<T> {
+
+    private final Method method;
+    private final int parameterCount;
+    private final MethodHandle handle;
+
+    MethodAccessor(Method method) throws IllegalAccessException {
+        this.method = method;
+        this.parameterCount = method.getParameterCount();
+
+        // a varargs method takes its array as is, like Method#invoke
+        MethodHandle handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+
+        if (Modifier.isStatic(method.getModifiers())) {
+            // take and ignore a target so every accessor has the same shape
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+
+        this.handle = handle
+                .asType(MethodType.genericMethodType(parameterCount + 1))
+                .asSpreader(Object[].class, parameterCount);
+    }
+
+    /**
+     * @param target the object to invoke on, ignored for static methods
+     * @param args   the arguments
+     * @return the result, or null if the method is void or could not be invoked
+     */
+    @SuppressWarnings("unchecked")
+    public T invoke(Object target, Object... args) {
+        if (args.length != parameterCount) {
+            return null;
+        }
+
+        try {
+            return (T) (Object) handle.invokeExact(target, args);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    @Override
+    public String toString() {
+        return "MethodAccessor{" + method.getDeclaringClass().getName() + '.' + method.getName() + '}';
+    }
+}
@@ -1,24 +1,20 @@
 package gg.tracer.commons.util;
 
-import gg.tracer.commons.logging.StaticLog;
-
-import java.io.File;
-import java.io.FileInputStream;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
+import java.lang.invoke.*;
+import java.lang.reflect.*;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The {@link Reflection} class contains safe helper methods
  * for manipulation of java's reflection. These methods are
  * considered safe as they catch exceptions and return null
  * in most cases.
+ * <p>
+ * Fields, methods and their accessors are looked up once per class
+ * and name (and parameter types) and cached, including misses.
  *
  * @author Bradley Steele
  */
@@ -27,6 +23,11 @@ public final class Reflection {
     private static final Class<?>[] EMPTY_CLASS_ARRAY = new Class<?>[] {};
     private static final Object[] EMPTY_OBJECT_ARRAY = new Object[] {};
 
+    private static final ClassValue<Map<String, Optional<Field>>> FIELDS = new CacheValue<>();
+    private static final ClassValue<Map<String, Optional<FieldAccessor<?>>>> FIELD_ACCESSORS = new CacheValue<>();
+    private static final ClassValue<Map<Object, Optional<Method>>> METHODS = new CacheValue<>();
+    private static final ClassValue<Map<Object, Optional<MethodAccessor<?>>>> METHOD_ACCESSORS = new CacheValue<>();
+
     private Reflection() {}
 
     // package
@@ -104,7 +105,8 @@ public final class Reflection {
 
     /**
      * Returns a {@link Set} of classes of a specific type that are
-     * within a package.
+     * within a package or its subpackages. The classes are found by
+     * {@link ClassScanner} and are not initialized.
      *
      * @param paths an array containing paths of where to look
      * @param packageName the containing package name
@@ -112,96 +114,13 @@ public final class Reflection {
      * @return the classes within a package
      */
     public static <T> Set<Class<? extends T>> getClassesFromPackage(String[] paths, String packageName, Class<T> type) {
-        Set<Class<? extends T>> classes = new HashSet<>();
-        String packagePrefix = packageName.replace(".", "/");
-
-        for (String path : paths) {
-            if (path.endsWith(".jar")) {
-                try {
-                    JarInputStream stream = new JarInputStream(new FileInputStream(path));
-                    JarEntry jarEntry;
-
-                    do {
-                        jarEntry = stream.getNextJarEntry();
-
-                        if (jarEntry == null) {
-                            break;
-                        }
-
-                        String name = jarEntry.getName();
-
-                        if (name.startsWith(packagePrefix) && name.endsWith(".class")) {
-                            Class<? extends T> clazz;
-
-                            try {
-                                clazz = getClassFromPackagePath(name, type);
-                            } catch (Throwable e) {
-                                continue;
-                            }
-
-                            if (clazz != null) {
-                                classes.add(clazz);
-                            }
-                        }
-                    } while (true);
-                } catch (Exception e) {
-                    StaticLog.exception(e);
-                }
-            } else {
-                File[] files;
-
-                if (path.endsWith(".class")) {
-                    files = new File[] { new File(path) };
-                } else {
-                    File base = new File(path + File.separatorChar + packagePrefix);
-                    files = base.listFiles();
-                }
-
-                if (files == null) {
-                    continue;
-                }
-
-                for (File file : files) {
-                    String name = file.getName();
-
-                    if (name.endsWith(".class")) {
-                        Class<? extends T> clazz;
-
-                        try {
-                            clazz = getClassFromPackagePath(packageName + '.' + name, type);
-                        } catch (Throwable t) {
-                            continue;
-                        }
-
-                        if (clazz != null) {
-                            classes.add(clazz);
-                        }
-                    }
-                }
-            }
-        }
-
-        return classes;
+        return ClassScanner.findClasses(Arrays.asList(paths), packageName, type, getClassLoader(Reflection.class));
     }
 
     public static <T> Set<Class<? extends T>> getClassesFromPackage(String packageName, Class<T> type) {
         return getClassesFromPackage(System.getProperty("java.class.path").split(System.getProperty("path.separator")), packageName, type);
     }
 
-    @SuppressWarnings("unchecked")
-    private static <T> Class<? extends T> getClassFromPackagePath(String name, Class<T> type) throws ClassNotFoundException {
-        String classPath = name.replaceAll("\\.class$", "")
-                .replace("/", ".");
-
-        Class<?> clazz = Class.forName(classPath);
-
-        if (type.isAssignableFrom(clazz)) {
-            return (Class<? extends T>) clazz;
-        }
-
-        return null;
-    }
-
 
     // class
 
@@ -299,11 +218,42 @@ public final class Reflection {
     }
 
     public static <T> T invokeMethod(Object object, String methodName, Object... args) {
-        return invokeMethod(object, getMethod(object.getClass(), methodName), args);
+        MethodAccessor<T> accessor = getMethodAccessor(object.getClass(), methodName);
+        return accessor != null ? accessor.invoke(object, args) : null;
     }
 
     public static <T> T invokeMethod(Object object, String methodName) {
-        return invokeMethod(object, getMethod(object.getClass(), methodName));
+        return invokeMethod(object, methodName, EMPTY_OBJECT_ARRAY);
+    }
+
+    /**
+     * Returns a cached accessor for a method declared by a class or
+     * one of its superclasses.
+     *
+     * @param clazz          the class
+     * @param name           the method's name
+     * @param parameterTypes the method's parameter types
+     * @return the accessor, or null if there is no such method
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> MethodAccessor<T> getMethodAccessor(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        if (clazz == null || name == null) {
+            return null;
+        }
+
+        return (MethodAccessor<T>) METHOD_ACCESSORS.get(clazz).computeIfAbsent(methodKey(name, parameterTypes), key -> {
+            Method method = getMethod(clazz, name, parameterTypes);
+
+            try {
+                return method != null ? Optional.of(new MethodAccessor<>(method)) : Optional.empty();
+            } catch (IllegalAccessException e) {
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    public static <T> MethodAccessor<T> getMethodAccessor(Class<?> clazz, String name) {
+        return getMethodAccessor(clazz, name, EMPTY_CLASS_ARRAY);
     }
 
     private static final String GET1 = "get";
@@ -328,6 +278,14 @@ public final class Reflection {
     }
 
     public static Method getMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        if (clazz == null || name == null) {
+            return null;
+        }
+
+        return METHODS.get(clazz).computeIfAbsent(methodKey(name, parameterTypes), key -> Optional.ofNullable(findMethod(clazz, name, parameterTypes))).orElse(null);
+    }
+
+    private static Method findMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
         Method method = null;
         Class<?> c = clazz;
 
@@ -389,6 +347,39 @@ public final class Reflection {
     }
 
     public static Field getField(Class<?> clazz, String name) {
+        if (clazz == null || name == null) {
+            return null;
+        }
+
+        return FIELDS.get(clazz).computeIfAbsent(name, key -> Optional.ofNullable(findField(clazz, name))).orElse(null);
+    }
+
+    /**
+     * Returns a cached accessor for a field declared by a class or
+     * one of its superclasses.
+     *
+     * @param clazz the class
+     * @param name  the field's name
+     * @return the accessor, or null if there is no such field
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> FieldAccessor<T> getFieldAccessor(Class<?> clazz, String name) {
+        if (clazz == null || name == null) {
+            return null;
+        }
+
+        return (FieldAccessor<T>) FIELD_ACCESSORS.get(clazz).computeIfAbsent(name, key -> {
+            Field field = getField(clazz, name);
+
+            try {
+                return field != null ? Optional.of(new FieldAccessor<>(field)) : Optional.empty();
+            } catch (IllegalAccessException e) {
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    private static Field findField(Class<?> clazz, String name) {
         Field field = null;
         Class<?> c = clazz;
 
@@ -431,7 +422,8 @@ public final class Reflection {
     }
 
     public static <T> T getFieldValue(Class<?> clazz, String name, Object object) {
-        return getFieldValue(getField(clazz, name), object);
+        FieldAccessor<T> accessor = getFieldAccessor(clazz, name);
+        return accessor != null ? accessor.get(object) : null;
     }
 
     public static <T> T getFieldValue(Class<?> clazz, String name, Object object, T fallback) {
@@ -477,9 +469,188 @@ public final class Reflection {
             return;
         }
 
-        setFieldValue(object, getField(object.getClass(), fieldName), value);
+        FieldAccessor<Object> accessor = getFieldAccessor(object.getClass(), fieldName);
+
+        if (accessor != null) {
+            accessor.set(object, value);
+        }
+    }
+
+    // invokers
+
+    /**
+     * Creates an implementation of a functional interface that calls a
+     * method, e.g. a {@code Function<Entity, Object>} for an instance
+     * method without parameters or a custom interface with primitive
+     * parameters to avoid boxing.
+     * <p>
+     * The single abstract method takes the target first, unless the
+     * method is static, followed by the method's arguments. The invoker
+     * is a hidden class calling the method through a constant handle,
+     * which the JIT inlines like a direct call, including for private
+     * members. If the interface or the types of its method are not
+     * visible to this class' loader, the invoker falls back to a slower
+     * {@link MethodHandleProxies} proxy. Invokers should be created once
+     * and kept.
+     *
+     * @param interfaceType the functional interface
+     * @param method        the method to invoke
+     * @return the invoker, or null if it could not be created
+     */
+    public static <I> I createInvoker(Class<I> interfaceType, Method method) {
+        if (interfaceType == null || method == null) {
+            return null;
+        }
+
+        setAccessible(method, true);
+
+        try {
+            return createInvoker(interfaceType, MethodHandles.lookup().unreflect(method));
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    public static <I> I createInvoker(Class<I> interfaceType, Class<?> clazz, String name, Class<?>... parameterTypes) {
+        return createInvoker(interfaceType, getMethod(clazz, name, parameterTypes));
+    }
+
+    /**
+     * Creates an implementation of a functional interface that calls a
+     * constructor, e.g. a {@code Supplier} or a {@code Function} taking
+     * the constructor's single argument. See {@link #createInvoker(Class, Method)}.
+     *
+     * @param interfaceType the functional interface
+     * @param constructor   the constructor to invoke
+     * @return the invoker, or null if it could not be created
+     */
+    public static <I> I createInvoker(Class<I> interfaceType, Constructor<?> constructor) {
+        if (interfaceType == null || constructor == null) {
+            return null;
+        }
+
+        try {
+            constructor.setAccessible(true);
+        } catch (Exception e) {
+            // ignored
+        }
+
+        try {
+            return createInvoker(interfaceType, MethodHandles.lookup().unreflectConstructor(constructor));
+        } catch (IllegalAccessException e) {
+            return null;
+        }
     }
 
+    /**
+     * Creates an implementation of a functional interface that reads a
+     * field, e.g. a {@code Function<Entity, Object>} or a custom
+     * {@code ToIntFunction}. The interface's method takes the target,
+     * unless the field is static. See {@link #createInvoker(Class, Method)}.
+     *
+     * @param interfaceType the functional interface
+     * @param field         the field to read
+     * @return the getter, or null if it could not be created
+     */
+    public static <I> I createGetter(Class<I> interfaceType, Field field) {
+        if (interfaceType == null || field == null) {
+            return null;
+        }
+
+        setAccessible(field, true);
+
+        try {
+            return createInvoker(interfaceType, MethodHandles.lookup().unreflectGetter(field));
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static <I> I createInvoker(Class<I> interfaceType, MethodHandle handle) {
+        Method sam = getFunctionalMethod(interfaceType);
+
+        if (sam == null) {
+            return null;
+        }
+
+        // the invoker is defined beside this class, so it must be able to
+        // resolve the interface and the types of its method
+        ClassLoader loader = Reflection.class.getClassLoader();
+
+        if (isVisible(interfaceType, loader) && isVisible(sam, loader)) {
+            try {
+                return Invokers.create(interfaceType, sam, handle);
+            } catch (Throwable t) {
+                // fall back to a proxy
+            }
+        }
+
+        try {
+            return MethodHandleProxies.asInterfaceInstance(interfaceType, handle);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private static Method getFunctionalMethod(Class<?> interfaceType) {
+        if (!interfaceType.isInterface()) {
+            return null;
+        }
+
+        Method sam = null;
+
+        for (Method method : interfaceType.getMethods()) {
+            if (!Modifier.isAbstract(method.getModifiers()) || isObjectMethod(method)) {
+                continue;
+            }
+
+            if (sam != null) {
+                return null;
+            }
+
+            sam = method;
+        }
+
+        return sam;
+    }
+
+    // e.g. equals redeclared by an interface is not its functional method
+    private static boolean isObjectMethod(Method method) {
+        try {
+            Object.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static boolean isVisible(Method sam, ClassLoader loader) {
+        if (!isVisible(sam.getDeclaringClass(), loader) || !isVisible(sam.getReturnType(), loader)) {
+            return false;
+        }
+
+        for (Class<?> parameterType : sam.getParameterTypes()) {
+            if (!isVisible(parameterType, loader)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isVisible(Class<?> type, ClassLoader loader) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+
+        try {
+            return Class.forName(type.getName(), false, loader) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+
     // enum
 
     public static <T extends Enum<T>> T matchEnum(Class<T> clazz, String str, T fallback) {
@@ -497,4 +668,39 @@ public final class Reflection {
     public static <T extends Enum<T>> T matchEnum(Class<T> clazz, String str) {
         return matchEnum(clazz, str, null);
     }
+
+    // cache
+
+    private static Object methodKey(String name, Class<?>[] parameterTypes) {
+        return parameterTypes == null || parameterTypes.length == 0 ? name : new MethodKey(name, parameterTypes);
+    }
+
+    private static final class CacheValue<K, V> extends ClassValue<Map<K, V>> {
+
+        @Override
+        protected Map<K, V> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    }
+
+    private static final class MethodKey {
+
+        private final String name;
+        private final Class<?>[] parameterTypes;
+
+        private MethodKey(String name, Class<?>[] parameterTypes) {
+            this.name = name;
+            this.parameterTypes = parameterTypes.clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof MethodKey other && name.equals(other.name) && Arrays.equals(parameterTypes, other.parameterTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + Arrays.hashCode(parameterTypes);
+        }
+    }
 }
@@ -0,0 +1,128 @@
+package gg.tracer.commons.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The {@link VirtualThreads} class creates virtual threads when
+ * the running JVM supports them (Java 21+). The library itself
+ * targets Java 17, so the API is resolved reflectively and every
+ * method falls back to daemon platform threads otherwise.
+ *
+ * @author Bradley Steele
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_NAME_COUNTER;
+    private static final Method BUILDER_UNSTARTED;
+    private static final Method BUILDER_FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+    private static final boolean SUPPORTED;
+
+    static {
+        Class<?> builder = Reflection.getClass("java.lang.Thread$Builder");
+
+        OF_VIRTUAL = Reflection.getMethod(Thread.class, "ofVirtual");
+        BUILDER_NAME = builder != null ? Reflection.getMethod(builder, "name", String.class) : null;
+        BUILDER_NAME_COUNTER = builder != null ? Reflection.getMethod(builder, "name", String.class, long.class) : null;
+        BUILDER_UNSTARTED = builder != null ? Reflection.getMethod(builder, "unstarted", Runnable.class) : null;
+        BUILDER_FACTORY = builder != null ? Reflection.getMethod(builder, "factory") : null;
+        NEW_THREAD_PER_TASK_EXECUTOR = Reflection.getMethod(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+        // preview builds expose the api but throw unless enabled
+        SUPPORTED = OF_VIRTUAL != null
+                && BUILDER_NAME != null
+                && BUILDER_NAME_COUNTER != null
+                && BUILDER_UNSTARTED != null
+                && BUILDER_FACTORY != null
+                && NEW_THREAD_PER_TASK_EXECUTOR != null
+                && Reflection.invokeMethod(null, OF_VIRTUAL) != null;
+    }
+
+    private VirtualThreads() {}
+
+    /**
+     * @return true if the running JVM supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * Creates an unstarted thread, a virtual thread if supported.
+     *
+     * @param name     the thread name
+     * @param runnable the thread's task
+     * @return the unstarted thread
+     */
+    public static Thread newThread(String name, Runnable runnable) {
+        if (SUPPORTED) {
+            Object builder = Reflection.invokeMethod(null, OF_VIRTUAL);
+            builder = Reflection.invokeMethod(builder, BUILDER_NAME, name);
+
+            Thread thread = Reflection.invokeMethod(builder, BUILDER_UNSTARTED, runnable);
+
+            if (thread != null) {
+                return thread;
+            }
+        }
+
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+
+        return thread;
+    }
+
+    /**
+     * Creates a thread factory naming threads {@code prefix0},
+     * {@code prefix1}, ...
+     *
+     * @param prefix the thread name prefix
+     * @return the thread factory
+     */
+    public static ThreadFactory newThreadFactory(String prefix) {
+        if (SUPPORTED) {
+            Object builder = Reflection.invokeMethod(null, OF_VIRTUAL);
+            builder = Reflection.invokeMethod(builder, BUILDER_NAME_COUNTER, prefix, 0L);
+
+            ThreadFactory factory = Reflection.invokeMethod(builder, BUILDER_FACTORY);
+
+            if (factory != null) {
+                return factory;
+            }
+        }
+
+        return new ThreadFactoryBuilder()
+                .setNameFormat(prefix.replace("%", "%%") + "%d")
+                .setDaemon(true)
+                .build();
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for
+     * every task, or a cached pool of platform threads if virtual
+     * threads are not supported.
+     *
+     * @param prefix the thread name prefix
+     * @return the executor
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        ThreadFactory factory = newThreadFactory(prefix);
+
+        if (SUPPORTED) {
+            ExecutorService executor = Reflection.invokeMethod(null, NEW_THREAD_PER_TASK_EXECUTOR, factory);
+
+            if (executor != null) {
+                return executor;
+            }
+        }
+
+        return Executors.newCachedThreadPool(factory);
+    }
+}